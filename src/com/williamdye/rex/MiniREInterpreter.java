@@ -4,24 +4,61 @@ import com.williamdye.rex.ast.*;
 import com.williamdye.rex.parser.*;
 import com.williamdye.rex.tokens.*;
 
-import java.io.File;
+import com.williamdye.rex.util.*;
+
+import java.io.*;
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.concurrent.*;
 
 /**
- * The driver for the MiniRE interpreter.
+ * The driver for the MiniRE interpreter. The statements of the script are evaluated in order, unless
+ * the <code>--threads</code> option names a number of threads on which independent statements are
+ * evaluated concurrently. What the script prints goes to standard output, unless the <code>--output</code>
+ * option names a file, to which it is then written directly through the file's channel.
  * @author William Dye
  */
 public class MiniREInterpreter
 {
 
+    /** The option, followed by a number of threads, that evaluates independent statements concurrently. */
+    public static final String THREADS_OPTION = "--threads";
+
+    /** The option, followed by a file name, that writes what the script prints to the file. */
+    public static final String OUTPUT_OPTION = "--output";
+
+    private static final String USAGE = "Usage: java Interpreter [" + THREADS_OPTION + " <count>] ["
+            + OUTPUT_OPTION + " <output-file>] <minire-script-file>";
+
+    private MiniREInterpreter() { /* prevent instantiation */ }
+
     /**
      * The entry point for the program.
-     * @param args the name of the file containing the MiniRE script to interpret
+     * @param args the optional <code>--threads</code> and <code>--output</code> options (each followed by its
+     *        value), then the name of the file containing the MiniRE script to interpret
      */
     public static void main(String[] args)
     {
+        int threads = 0;
+        File output = null;
+        while (args.length > 1 && (THREADS_OPTION.equals(args[0]) || OUTPUT_OPTION.equals(args[0]))) {
+            if (OUTPUT_OPTION.equals(args[0]))
+                output = new File(args[1]);
+            else {
+                try {
+                    threads = Integer.parseInt(args[1]);
+                } catch (NumberFormatException except) {
+                    threads = -1;
+                }
+                if (threads < 1) {
+                    out("Invalid number of threads: " + args[1]);
+                    return;
+                }
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
         if (args.length < 1) {
-            out("Usage: java Interpreter <minire-script-file>");
+            out(USAGE);
             return;
         }
 
@@ -39,8 +76,28 @@ public class MiniREInterpreter
             out("\n\nCaught parse exception: " + except.getMessage() + " (" + except.getErrorOffset() + ")");
             return;
         }
+        OutputBuffer printer = null;
+        if (output != null) {
+            try {
+                printer = new OutputBuffer(new FileOutputStream(output).getChannel());
+            } catch (FileNotFoundException except) {
+                out("Unable to open output file: " + output.getPath());
+                return;
+            }
+        }
+
         ASTEvaluator evaluator = new ASTEvaluator(tree);
-        evaluator.evaluate();
+        ExecutorService pool = (threads > 0 ? Executors.newFixedThreadPool(threads) : null);
+        evaluator.setExecutor(pool);
+        evaluator.setOutput(printer);
+        try {
+            evaluator.evaluate();
+        } finally {
+            if (pool != null)
+                pool.shutdown();
+            if (printer != null)
+                printer.close();
+        }
     }
 
     /* A thin wrapper around System.out.println() for convenience. */
@@ -4,6 +4,7 @@ import com.williamdye.rex.automata.*;
 import com.williamdye.rex.parser.*;
 import com.williamdye.rex.scanner.*;
 import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
 
 import java.io.File;
 import java.text.ParseException;
@@ -15,23 +16,33 @@ import java.util.*;
  * then parses the file and generates an NFA representing the specified language.
  * Converts the generated NFA into a DFA capable of recognizing the token classes
  * defined in the specification file. Then reads the files named in <code>args[1]</code>
- * and beyond and prints the tokens it finds therein.
+ * and beyond and prints the tokens it finds therein. The DFA is minimized before it is walked,
+ * unless the first argument is the <code>--no-minimize</code> option.
  * @author William Dye
  * @author Taylor Holden
  */
 public class MiniREScanner
 {
 
+    /** The option that skips the minimization of the DFA. */
+    public static final String NO_MINIMIZE_OPTION = "--no-minimize";
+
     private MiniREScanner() { /* prevent instantiation */ }
 
     /**
      * The entry point for the program.
-     * @param args the names of the files containing the lexical specification and input to test
+     * @param args an optional <code>--no-minimize</code>, then the names of the files containing the
+     *        lexical specification and input to test
      */
     public static void main(String[] args)
     {
+        boolean minimize = true;
+        if (args.length > 0 && NO_MINIMIZE_OPTION.equals(args[0])) {
+            minimize = false;
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
         if (args.length < 2) {
-            out("Usage: java ScannerDriver <lexical-specification> <input-file> [<input-file> ...]");
+            out("Usage: java ScannerDriver [" + NO_MINIMIZE_OPTION + "] <lexical-specification> <input-file> [<input-file> ...]");
             return;
         }
 
@@ -67,9 +78,17 @@ public class MiniREScanner
 		/* combined NFA -> DFA table */
         print("Converting the large NFA into a DFA ...");
         DFA dfa = NFAToDFAConverter.convert(combinedNFA, stateMap);
+        out(" Done.\n");
+
+        /* DFA -> minimal DFA */
+        if (minimize) {
+            print("Minimizing the DFA (" + dfa.getNumStates() + " states) ...");
+            dfa = DFAMinimizer.minimize(dfa, stateMap);
+            out(" Done (" + dfa.getNumStates() + " states).\n");
+        }
+        CompiledDFA table = new CompiledDFAImpl(dfa);
         
 		/* DFA table + input file(s) -> table walker -> tokens */
-        out(" Done.\n");
         Scanner scan = new Scanner(System.in);
         scan.useDelimiter("");
         for (int i = 1; i < args.length; i++) {
@@ -80,7 +99,7 @@ public class MiniREScanner
                 final String KEY = (System.getProperty("os.name").contains("Mac") ? "Return" : "Enter");
                 print("Ready to traverse input file \"" + args[i] + "\". Press " + KEY + " to continue. ");
                 scan.next();
-                walkInputFile(dfa, source, stateMap);
+                walkInputFile(table, source);
                 out("\n");
             }
         }
@@ -139,15 +158,26 @@ public class MiniREScanner
         return combined;
     }
 
-    /* Walks through the specified DFA using the source file as input and prints the tokens it finds. */
-    private static void walkInputFile(DFA dfa, File source, Map<String, Set<State>> map)
+    /* Walks through the specified DFA using the source file as input and prints the tokens it finds.
+     * The tokens are printed through a buffer, which is flushed once the whole file has been walked. */
+    private static void walkInputFile(CompiledDFA table, File source)
     {
-        final int MAX = getMaxStringLength(map.keySet());
-        TableWalker walker = new TableWalkerImpl(dfa, source, map);
+        final int MAX = getMaxStringLength(table.getTokenClasses());
+        TableWalker walker = new TableWalkerImpl(table, source);
+        OutputBuffer output = new OutputBuffer(System.out);
         SourceToken token;
-        while (walker.hasNextToken()) {
-            token = walker.getNextToken();
-            out(String.format("%1$-" + MAX + "s\t", token.getTokenType()) + token.getTokenString());
+        try {
+            while (walker.hasNextToken()) {
+                token = walker.getNextToken();
+                String type = String.valueOf(token.getTokenType());
+                output.print(type);
+                for (int i = type.length(); i < MAX; i++)   /* left-justify the type in a column of width MAX */
+                    output.print(' ');
+                output.print('\t');
+                output.println(token.getTokenString());
+            }
+        } finally {
+            output.flush();
         }
     }
 
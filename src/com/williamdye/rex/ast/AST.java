@@ -1,5 +1,7 @@
 package com.williamdye.rex.ast;
 
+import java.util.*;
+
 /**
  * Represents an abstract syntax tree.
  * @author William Dye
@@ -19,4 +21,21 @@ public interface AST
      */
     public void setStartNode(ASTNode start);
 
+    /**
+     * Finds the dead assignments in an AST: the statements that assign a list of strings to an
+     * identifier that no later statement reads before another list is assigned to it. A statement
+     * that is itself a dead assignment does not make the identifiers it reads live.
+     * @return the dead assignment statements
+     */
+    public Set<ASTNode> getDeadAssignments();
+
+    /**
+     * Finds the dependencies between the statements of an AST. A statement depends on the earlier
+     * statements that assign an identifier it reads or assigns, that read an identifier it assigns, or
+     * that write a file it reads (every earlier replace, if it reads a file pattern). A replace depends
+     * on every earlier statement, so that no file is written unless all of them have been evaluated.
+     * @return a map from each statement, in program order, to the earlier statements it depends on
+     */
+    public Map<ASTNode, Set<ASTNode>> getDependencies();
+
 }
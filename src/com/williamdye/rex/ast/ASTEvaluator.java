@@ -5,9 +5,11 @@ import com.williamdye.rex.parser.*;
 import com.williamdye.rex.string.*;
 import com.williamdye.rex.scanner.*;
 import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
 
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 
 /**
@@ -21,29 +23,380 @@ import java.io.*;
 public class ASTEvaluator
 {
 
+    /** The default maximum number of rounds of replacement on any line in a <code>recursivereplace</code>. */
+    public static final int DEFAULT_MAX_REPLACE_ITERATIONS = 1000;
+
+    /* The size of the buffers that hold what a statement (or operand) prints until it can be printed in order. */
+    private static final int CAPTURE_CAPACITY = 1 << 12;
+
+    /* The number of bytes that a statement (or operand) may print before they are moved to a temporary file. */
+    private static final int CAPTURE_MEMORY_LIMIT = 1 << 16;
+
 	protected Map<String, List<MiniREString>> matchLists;
     protected Map<String, Integer> ints;
     protected AST tree;
+    private Map<ASTNode, List<MiniREString>> prefetched;
+    private Map<String, ASTNode> pending;
+    private Map<String, Integer> repeatedTerms;
+    private Map<String, List<MiniREString>> findCache;
+    private Map<String, String> findCacheKeys;
+    private Map<String, List<File>> findCacheFiles;
+    private Set<ASTNode> deadAssignments;
+    private int maxReplaceIterations;
+    private ExecutorService executor;
+    private ForkJoinPool operandPool;
+    private boolean concurrent;
+    private volatile boolean aborted;
+    private final ThreadLocal<OutputBuffer> output;
+    private OutputBuffer printer;
 	
     public ASTEvaluator(AST ast)
     {
         tree = ast;
-        matchLists = new LinkedHashMap<String, List<MiniREString>>();
-        ints = new LinkedHashMap<String, Integer>();
+        matchLists = Collections.synchronizedMap(new LinkedHashMap<String, List<MiniREString>>());
+        ints = Collections.synchronizedMap(new LinkedHashMap<String, Integer>());
+        prefetched = Collections.synchronizedMap(new IdentityHashMap<ASTNode, List<MiniREString>>());
+        pending = Collections.synchronizedMap(new LinkedHashMap<String, ASTNode>());
+        repeatedTerms = new HashMap<String, Integer>();
+        findCache = new HashMap<String, List<MiniREString>>();
+        findCacheKeys = new HashMap<String, String>();
+        findCacheFiles = new HashMap<String, List<File>>();
+        deadAssignments = Collections.emptySet();
+        maxReplaceIterations = DEFAULT_MAX_REPLACE_ITERATIONS;
+        executor = null;
+        operandPool = MatchFinder.getPool();
+        concurrent = false;
+        aborted = false;
+        output = new ThreadLocal<OutputBuffer>();
+        printer = null;
+    }
+
+    /**
+     * Sets the executor on which independent statements are evaluated concurrently. By default, no
+     * executor is set, and the statements are evaluated one at a time, in order.
+     * @param executor the executor to use, or <code>null</code> to evaluate the statements in order
+     */
+    public void setExecutor(ExecutorService executor)
+    {
+        this.executor = executor;
     }
 
     /**
-     * Evaluates the specified AST.
+     * Sets the fork/join pool on which the operands of a chain of set operations are evaluated in
+     * parallel. By default, the pool that <code>MatchFinder</code> scans files on is used. The operands
+     * are evaluated one after another if the pool is <code>null</code> or has a single worker.
+     * @param pool the pool to use, or <code>null</code> to evaluate the operands in order
+     */
+    public void setOperandPool(ForkJoinPool pool)
+    {
+        operandPool = pool;
+    }
+
+    /**
+     * Sets the buffer to which the evaluator prints, which is flushed after each statement, in program order.
+     * By default, the evaluator prints to <code>System.out</code> through a new <code>OutputBuffer</code>.
+     * @param printer the buffer to print to, or <code>null</code> for the default
+     */
+    public void setOutput(OutputBuffer printer)
+    {
+        this.printer = printer;
+    }
+
+    /**
+     * Sets the maximum number of rounds of replacement on any line in a <code>recursivereplace</code>,
+     * after which it is reported as not terminating and its destination file is left unchanged.
+     * @param maxIterations the maximum number of rounds
+     * @throws IllegalArgumentException if <code>maxIterations</code> is not positive
+     */
+    public void setMaxReplaceIterations(int maxIterations)
+    {
+        if (maxIterations < 1)
+            throw new IllegalArgumentException("The maximum number of replace iterations must be positive");
+        maxReplaceIterations = maxIterations;
+    }
+
+    /**
+     * Evaluates the specified AST. Within each basic block of statements (which ends after a statement
+     * that writes a file), the find terms that read the same file are matched in a single pass over it.
+     * An assignment of a find expression is only evaluated once its identifier is used (or a file it
+     * reads is about to be written), and not at all if the identifier is never used. A find term that
+     * occurs more than once is only evaluated again if a file it reads has changed.
+     * <p>
+     * If an executor has been set, statements are instead evaluated concurrently on it, each as soon as
+     * the statements it depends on have been evaluated. Find terms are then neither shared within a block
+     * nor deferred: a find assignment is evaluated as soon as it can be (unless it is never used).
+     * Everything a statement prints is still printed in program order.
      */
     public void evaluate()
     {
+        OutputBuffer defaultPrinter = printer;
+        if (printer == null)
+            printer = new OutputBuffer(System.out);
+        try {
+            evaluateStatements();
+        } finally {
+            printer.flush();
+            printer = defaultPrinter;
+        }
+    }
+
+    /* Helper method for evaluate(). Evaluates the statements either concurrently or in order. */
+    private void evaluateStatements()
+    {
+        deadAssignments = tree.getDeadAssignments();
+        countRepeatedTerms();
+        if (executor != null) {
+            concurrent = true;
+            try {
+                evaluateConcurrently(executor);
+            } finally {
+                concurrent = false;
+            }
+            return;
+        }
+
     	ASTNode curNode = tree.getStartNode();
+        boolean blockStart = true;
     	while(curNode != null) {
+            if (blockStart)
+                prefetchBlock(curNode);
             evaluateNode(curNode);
+            printer.flush();
+            blockStart = writesFile(curNode);
             curNode = curNode.getNext();
     	}
     }
 
+    /* Evaluates the statements on the executor, each once the statements it depends on have been evaluated.
+     * What each statement prints is kept until everything printed by the statements before it has been
+     * printed. If a statement fails, nothing after it is printed and its exception is rethrown; no later
+     * replace is evaluated, since a replace depends on every statement before it. */
+    private void evaluateConcurrently(ExecutorService pool)
+    {
+        Map<ASTNode, Set<ASTNode>> dependencies = tree.getDependencies();
+        Map<ASTNode, StatementTask> tasks = new IdentityHashMap<ASTNode, StatementTask>();
+        List<StatementTask> order = new ArrayList<StatementTask>();
+        List<StatementTask> ready = new ArrayList<StatementTask>();
+        for (Map.Entry<ASTNode, Set<ASTNode>> entry : dependencies.entrySet()) {
+            StatementTask task = new StatementTask(entry.getKey(), pool);
+            for (ASTNode node : entry.getValue()) {
+                tasks.get(node).dependents.add(task);
+                task.unresolved++;
+            }
+            tasks.put(entry.getKey(), task);
+            order.add(task);
+            if (0 == task.unresolved)
+                ready.add(task);
+        }
+        aborted = false;
+        /* the tasks that are ready are found before any is run, since a running task resolves its dependents */
+        for (StatementTask task : ready)
+            task.schedule();
+
+        int next = 0;
+        try {
+            for (; next < order.size(); next++) {
+                StatementTask task = order.get(next);
+                synchronized (task) {
+                    while (!task.done) {
+                        try {
+                            task.wait();
+                        } catch (InterruptedException except) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Interrupted while evaluating statements", except);
+                        }
+                    }
+                }
+                task.printed.copyTo(printer);
+                printer.flush();
+                if (task.failure instanceof RuntimeException)
+                    throw (RuntimeException)task.failure;
+                else if (task.failure instanceof Error)
+                    throw (Error)task.failure;
+            }
+        } finally {
+            if (next < order.size()) {
+                aborted = true;     /* nothing after the failed statement is needed */
+                for (StatementTask task : order.subList(next, order.size()))
+                    task.discard();
+            }
+        }
+    }
+
+    /* Returns the buffer to which the statement being evaluated prints. */
+    private OutputBuffer out()
+    {
+        OutputBuffer buffer = output.get();
+        return (buffer != null ? buffer : printer);
+    }
+
+    /* Counts the occurrences of each find term whose matches are kept, remembering those that occur more than once. */
+    private void countRepeatedTerms()
+    {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (ASTNode node = tree.getStartNode(); node != null; node = node.getNext()) {
+            List<ASTNode> finds = new ArrayList<ASTNode>();
+            if (!deadAssignments.contains(node))
+                addFindTerms(node, finds);
+            for (ASTNode find : finds) {
+                String term = getTermText(find);
+                counts.put(term, (counts.containsKey(term) ? counts.get(term) + 1 : 1));
+            }
+        }
+        repeatedTerms.clear();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1)
+                repeatedTerms.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /* Finds the matches of every find term in the basic block starting at the specified node that reads
+     * the same file as another term, scanning each such file once for all of its terms. The block ends at
+     * the first statement that writes a file, so every file it reads is unchanged until the block ends. */
+    private void prefetchBlock(ASTNode first)
+    {
+        prefetched.clear();
+        Map<String, Map<String, List<ASTNode>>> byFile = new LinkedHashMap<String, Map<String, List<ASTNode>>>();
+        for (ASTNode node = first; node != null && !writesFile(node); node = node.getNext()) {
+            List<ASTNode> finds = new ArrayList<ASTNode>();
+            if (!deadAssignments.contains(node))
+                addFindTerms(node, finds);
+            for (ASTNode find : finds) {
+                /* only a single existing file and a valid regex, so that no message is printed early */
+                List<String> filenames = getFileNames(find);
+                String filename = filenames.get(filenames.size() - 1);
+                if (filenames.size() != 1 || FileGlob.isPattern(filename) || !new File(filename).isFile())
+                    continue;
+                String regex = find.getChild().getTokenString();
+                if (!RecognizerCache.getSharedCache().isValid(regex))
+                    continue;
+                if (!byFile.containsKey(filename))
+                    byFile.put(filename, new LinkedHashMap<String, List<ASTNode>>());
+                Map<String, List<ASTNode>> byRegex = byFile.get(filename);
+                if (!byRegex.containsKey(regex))
+                    byRegex.put(regex, new ArrayList<ASTNode>());
+                byRegex.get(regex).add(find);
+            }
+        }
+
+        /* terms with the same regex share one (read-only) list of matches */
+        for (Map.Entry<String, Map<String, List<ASTNode>>> entry : byFile.entrySet()) {
+            Map<String, List<ASTNode>> byRegex = entry.getValue();
+            if (byRegex.size() < 2)
+                continue;
+            List<Recognizer> recognizers = new ArrayList<Recognizer>();
+            for (String regex : byRegex.keySet())
+                recognizers.add(getRecognizer(regex));
+            List<Map<String, MiniREString>> results = MatchFinder.find(recognizers, new File(entry.getKey()), entry.getKey());
+            int i = 0;
+            for (List<ASTNode> finds : byRegex.values()) {
+                List<MiniREString> list = Collections.unmodifiableList(new ArrayList<MiniREString>(results.get(i++).values()));
+                for (ASTNode find : finds)
+                    prefetched.put(find, list);
+            }
+        }
+    }
+
+    /* Adds the find terms of a statement whose matches are kept (rather than counted or printed as they are found). */
+    private static void addFindTerms(ASTNode node, List<ASTNode> finds)
+    {
+        if (ASTNodeType.ASSIGN == node.getNodeType()) {
+            ASTNode value = node.getChild().getNext();
+            if (ASTNodeType.FIND == value.getNodeType())
+                addFindChain(value, finds);
+        } else if (ASTNodeType.PRINT == node.getNodeType()) {
+            for (ASTNode child = node.getChild(); child != null; child = child.getNext()) {
+                if (ASTNodeType.FIND == child.getNodeType() && hasSetOperation(child))
+                    addFindChain(child, finds);
+            }
+        }
+    }
+
+    /* Adds a find node and the find nodes it is combined with by set operations. */
+    private static void addFindChain(ASTNode node, List<ASTNode> finds)
+    {
+        for (ASTNode find = node; find != null; find = (hasSetOperation(find) ? getLastFileName(find).getNext().getChild() : null))
+            finds.add(find);
+    }
+
+    /* Evaluates the deferred assignment of the identifier, if it has one. */
+    private void force(String id)
+    {
+        ASTNode value = pending.remove(id);
+        if (value != null)
+            matchLists.put(id, evaluateFindNode(value));
+    }
+
+    /* Evaluates the deferred assignments that must not wait until after the specified file is written:
+     * those that read the file (or a file pattern, which it might match), and those whose matches have
+     * already been found for the current block. */
+    private void forcePending(String dest)
+    {
+        File destFile = canonical(dest);
+        for (String id : new ArrayList<String>(pending.keySet())) {
+            List<ASTNode> finds = new ArrayList<ASTNode>();
+            addFindChain(pending.get(id), finds);
+            boolean force = false;
+            for (ASTNode find : finds) {
+                if (prefetched.containsKey(find))
+                    force = true;
+                for (String filename : getFileNames(find)) {
+                    if (FileGlob.isPattern(filename) || destFile.equals(canonical(filename)))
+                        force = true;
+                }
+            }
+            if (force)
+                force(id);
+        }
+    }
+
+    /* Returns the canonical form of the named file, or its absolute form if that cannot be determined. */
+    private static File canonical(String filename)
+    {
+        File file = new File(filename);
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException except) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /* Returns true if evaluating a find node (and those it is combined with) prints nothing, because
+     * every regex is valid and every file exists, so that it may be evaluated later or not at all. */
+    private static boolean isQuiet(ASTNode node)
+    {
+        List<ASTNode> finds = new ArrayList<ASTNode>();
+        addFindChain(node, finds);
+        for (ASTNode find : finds) {
+            if (!isQuietTerm(find))
+                return false;
+        }
+        return true;
+    }
+
+    /* Returns true if evaluating a single find term prints nothing. */
+    private static boolean isQuietTerm(ASTNode find)
+    {
+        if (!RecognizerCache.getSharedCache().isValid(find.getChild().getTokenString()))
+            return false;
+        for (String filename : getFileNames(find)) {
+            List<String> expanded = FileGlob.expand(filename);
+            if (expanded.isEmpty())
+                return false;
+            for (String name : expanded) {
+                if (!new File(name).exists())
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /* Returns true if the statement writes a file, which ends a basic block. */
+    private static boolean writesFile(ASTNode node)
+    {
+        return ASTNodeType.REPLACE == node.getNodeType() || ASTNodeType.RECURSIVE_REPLACE == node.getNodeType();
+    }
+
     /* Helper method for evaluate(). Evaluates a single node in the tree. */
 	private void evaluateNode(ASTNode node)
     {
@@ -55,29 +408,56 @@ public class ASTEvaluator
             case ASSIGN:
            	    String id = node.getChild().getTokenString(); /* get identifier name */
                 ASTNode value = node.getChild().getNext();
-                if (ASTNodeType.COUNT == value.getNodeType())
+                if (ASTNodeType.COUNT == value.getNodeType()) {
 			        ints.put(id, evaluateCountNode(value));
+                    break;
+                }
+                pending.remove(id);     /* a deferred value that is replaced is never needed */
+                if (ASTNodeType.FIND == value.getNodeType() && isQuiet(value)) {
+                    if (deadAssignments.contains(node))
+                        break;
+                    if (concurrent)     /* the statement is already evaluated as soon as it can be */
+                        matchLists.put(id, evaluateFindNode(value));
+                    else
+                        pending.put(id, value);
+                } else if (deadAssignments.contains(node) && ASTNodeType.FIND != value.getNodeType())
+                    break;  /* never used, and prints nothing */
                 else if (ASTNodeType.MAX_FREQ_STRING == value.getNodeType())
                     matchLists.put(id, evaluateMaxFreqStringNode(value));
-                else if (ASTNodeType.IDENTIFIER == value.getNodeType())
+                else if (ASTNodeType.IDENTIFIER == value.getNodeType()) {
+                    force(value.getTokenString());
                     matchLists.put(id, matchLists.get(value.getTokenString()));
-                else
+                } else
                     matchLists.put(id, evaluateFindNode(value));
 			    break;
 		    case PRINT:
 			    ASTNode child = node.getChild();
 			    List<MiniREString> restrings;
+                OutputBuffer out = out();
 			    while (child != null) {
                     String name = child.getTokenString();
-                    if (matchLists.containsKey(name)) {
+                    if (ASTNodeType.IDENTIFIER == child.getNodeType())
+                        force(name);
+                    if (ASTNodeType.FIND == child.getNodeType()) {
+                        if (hasSetOperation(child)) {
+                            for (MiniREString str : evaluateFindNode(child)) {
+                                out.print(str.getString());
+                                out.print(' ');
+                            }
+                        } else
+                            printFind(child);
+                        out.print('\n');
+                    } else if (matchLists.containsKey(name)) {
 				        restrings = matchLists.get(name);
-                        for (MiniREString str : restrings)
-					        System.out.print(str.getString() + " ");
-                        System.out.print("\n");
+                        for (MiniREString str : restrings) {
+					        out.print(str.getString());
+                            out.print(' ');
+                        }
+                        out.print('\n');
                     } else if (ints.containsKey(name))
-                        System.out.println(ints.get(name));
+                        out.println(String.valueOf(ints.get(name)));
                     else
-				        System.out.println("Invalid identifier: \"" + name + "\"");
+				        out.println("Invalid identifier: \"" + name + "\"");
 				    child = child.getNext();
 			    }
                 break;
@@ -89,14 +469,12 @@ public class ASTEvaluator
                 String source = filenames.getChild().getTokenString();
                 String dest = filenames.getChild().getNext().getTokenString();
                 String ascii = node.getChild().getNext().getTokenString();
-			    ASTNode findNode = new ASTNodeImpl(ASTNodeType.FIND); /* create new find node to find the matches of the regex */
-			    findNode.setChild(node.getChild()); /* add regex child */
-			    findNode.getChild().setNext(filenames.getChild()); /* add source filename */
-			    List<MiniREString> matches = find(findNode);
+                forcePending(dest);
+                invalidateFindCache(dest);
                 try {
-                    replace(matches, ascii, source, dest, recursive);
+                    replace(node.getChild().getTokenString(), ascii, source, dest, recursive);
                 } catch (IOException ex) {
-                    System.out.println("Caught I/O exception during replace: " + ex.getLocalizedMessage());
+                    out().println("Caught I/O exception during replace: " + ex.getLocalizedMessage());
                 }
 			    break;
 		    default:
@@ -104,38 +482,70 @@ public class ASTEvaluator
         }
     }
 
-    /* Helper method for evaluating count nodes. */
+    /* Helper method for evaluating count nodes. Only the matches of an identifier are ever stored, and they
+     * already were when it was assigned. */
     private Integer evaluateCountNode(ASTNode node)
     {
         List<MiniREString> strings;
-        if (ASTNodeType.IDENTIFIER == node.getChild().getNodeType()) /* an identifier to count */
+        if (ASTNodeType.IDENTIFIER == node.getChild().getNodeType()) { /* an identifier to count */
+            force(node.getChild().getTokenString());
 			strings = matchLists.get(node.getChild().getTokenString());
-		else /* an expression to count */
-            strings = evaluateFindNode(node.getChild());
+        }
+        else if (!hasSetOperation(node.getChild())) /* a single find, whose matches need not be kept */
+            return (int)countFind(node.getChild());
+		else { /* an expression to count, for which only the number of matches of each string is kept */
+            long count = 0;
+            for (long matches : tallyFindNode(node.getChild()).values())
+                count += matches;
+            return (int)count;
+        }
 
 		int count = 0;
 		for (MiniREString string : strings) {
 			for (Metadata meta : string.getAllMetadata())
-				count += meta.getMatches().size();
+				count += meta.getMatchCount();
 		}
 		return count;
     }
 
-    /* Helper method for evaluating find nodes. */
+    /* Helper method for evaluating find nodes. The operands of a set operation are independent, so on an
+     * operand pool with more than one worker the rest of the chain is evaluated while this node's matches
+     * are found. If this node fails, the rest of the chain is discarded. */
     private List<MiniREString> evaluateFindNode(ASTNode node)
     {
         List<MiniREString> list;
-        if(node.getChild().getNext().hasNext()) {
-			ASTNode opNode = node.getChild().getNext().getNext();
+        if (hasSetOperation(node)) {
+			ASTNode opNode = getLastFileName(node).getNext();
+            List<MiniREString> left, right;
+            ForkJoinPool pool = operandPool;
+            if (pool != null && pool.getParallelism() > 1) {
+                OperandTask rest = new OperandTask(opNode.getChild());
+                if (ForkJoinTask.getPool() == pool)
+                    rest.fork();
+                else
+                    pool.execute(rest);
+                boolean found = false;
+                try {
+                    left = find(node);
+                    found = true;
+                } finally {
+                    if (!found)
+                        rest.discard();
+                }
+                right = rest.getResult();
+            } else {
+                left = find(node);
+                right = evaluateFindNode(opNode.getChild());
+            }
 			switch(opNode.getTokenType()) {
 			    case DIFF:
-				    list = diffOp(find(node), evaluateFindNode(opNode.getChild()));
+				    list = diffOp(left, right);
                     break;
 			    case INTERS:
-				    list = intersOp(find(node), evaluateFindNode(opNode.getChild()));
+				    list = intersOp(left, right);
                     break;
 			    case UNION:
-                    list = unionOp(find(node), evaluateFindNode(opNode.getChild()));
+                    list = unionOp(left, right);
                     break;
 			    default:
 		    	    throw new IllegalStateException("Find statement has illegal child " + opNode.getTokenType());
@@ -145,9 +555,59 @@ public class ASTEvaluator
         return list;
     }
 
+    /* Counts the matches of each distinct string in the result of a find node and the set operations that
+     * follow it, without storing their locations. Merging two strings adds up their metadata, so a union
+     * has the matches of both operands, an intersection those of the strings in both, and a difference
+     * those of the strings only in its first operand. */
+    private Map<String, Long> tallyFindNode(ASTNode node)
+    {
+        Map<String, Long> left = tallyFind(node);
+        if (!hasSetOperation(node))
+            return left;
+        ASTNode opNode = getLastFileName(node).getNext();
+        Map<String, Long> right = tallyFindNode(opNode.getChild());
+        switch (opNode.getTokenType()) {
+            case DIFF:
+                left.keySet().removeAll(right.keySet());
+                return left;
+            case INTERS:
+                Map<String, Long> intersection = new LinkedHashMap<String, Long>();
+                for (Map.Entry<String, Long> entry : left.entrySet()) {
+                    Long count = right.get(entry.getKey());
+                    if (count != null)
+                        intersection.put(entry.getKey(), entry.getValue() + count);
+                }
+                return intersection;
+            case UNION:
+                for (Map.Entry<String, Long> entry : right.entrySet()) {
+                    Long count = left.get(entry.getKey());
+                    left.put(entry.getKey(), (count == null ? entry.getValue() : count + entry.getValue()));
+                }
+                return left;
+            default:
+                throw new IllegalStateException("Find statement has illegal child " + opNode.getTokenType());
+        }
+    }
+
+    /* Returns the last file name node of a find node; any set operation follows it. */
+    private static ASTNode getLastFileName(ASTNode node)
+    {
+        ASTNode lastFile = node.getChild().getNext();
+        while (lastFile.hasNext() && ASTNodeType.FILENAME == lastFile.getNext().getNodeType())
+            lastFile = lastFile.getNext();
+        return lastFile;
+    }
+
+    /* Returns true if the find node is combined with another by a set operation. */
+    private static boolean hasSetOperation(ASTNode node)
+    {
+        return getLastFileName(node).hasNext();
+    }
+
     /* Helper method for evaluating the most frequent string. */
     private List<MiniREString> evaluateMaxFreqStringNode(ASTNode node)
     {
+        force(node.getChild().getTokenString());
         List<MiniREString> strings = matchLists.get(node.getChild().getTokenString());
         List<MiniREString> result = new ArrayList<MiniREString>();
 		if (strings == null || strings.isEmpty())
@@ -157,9 +617,9 @@ public class ASTEvaluator
 		    int counter = 0;
 		    for (MiniREString s : strings) {
 			    for (Metadata m : s.getAllMetadata()) {
-				    if (m.getMatches().size() >= counter) {
+				    if (m.getMatchCount() >= counter) {
 					    max = s;
-					    counter = m.getMatches().size();
+					    counter = m.getMatchCount();
 				    }
 			    }
 		    }
@@ -168,160 +628,465 @@ public class ASTEvaluator
 		return result;
     }
     
-    /* Helper method for evaluating the intersection of two sets. */
-    private List<MiniREString> intersOp(List<MiniREString> a, List<MiniREString> b)
+    /* Helper method for evaluating the intersection of two sets: each string of a (in order, duplicates
+     * included) that is also in b, merged with the first equal string of b. */
+    static List<MiniREString> intersOp(List<MiniREString> a, List<MiniREString> b)
     {
     	List<MiniREString> intersection = new ArrayList<MiniREString>();
-    	
-    	for(MiniREString s : a) {
-    		if (b.contains(s)) {
-    			List<Metadata> bMetas = b.get(b.indexOf(s)).getAllMetadata();
-    			s.addAllMetadata(bMetas);
-    			intersection.add(s);
-    		}
+        Map<MiniREString, MiniREString> bIndex = index(b);
+
+    	for (MiniREString s : a) {
+            MiniREString t = bIndex.get(s);
+    		if (t != null)
+    			intersection.add(merge(s, t));
     	}
     	return intersection;
     }
     
-    /* Helper method for evaluating the difference of two sets. */
-    private List<MiniREString> diffOp(List<MiniREString> a, List<MiniREString> b)
+    /* Helper method for evaluating the difference of two sets: each string of a (in order, duplicates
+     * included) that is not in b. */
+    static List<MiniREString> diffOp(List<MiniREString> a, List<MiniREString> b)
     {
     	List<MiniREString> difference = new ArrayList<MiniREString>();
+        Map<MiniREString, MiniREString> bIndex = index(b);
     	
     	for (MiniREString s : a) {
-    		if (!b.contains(s))
+    		if (!bIndex.containsKey(s))
     			difference.add(s);
     	}
     	return difference;
     }
     
-    /* Helper method for evaluating the union of two sets. */
-    private List<MiniREString> unionOp(List<MiniREString> a, List<MiniREString> b)
+    /* Helper method for evaluating the union of two sets: a, with each string of b in turn either merged
+     * into the first equal string already in the union or, if there is none, appended. */
+    static List<MiniREString> unionOp(List<MiniREString> a, List<MiniREString> b)
     {
-    	List<MiniREString> union = new ArrayList<MiniREString>();
-    	
-    	for(MiniREString s : a)
-    		union.add(s);
+    	List<MiniREString> union = new ArrayList<MiniREString>(a);
+        Map<MiniREString, Integer> positions = new HashMap<MiniREString, Integer>(2 * a.size());
+        for (int i = a.size() - 1; i >= 0; i--)
+            positions.put(a.get(i), i);     /* the first occurrence of each string */
     	
-    	for(MiniREString s : b)
-    	{
-    		if (!union.contains(s))
+    	for (MiniREString s : b) {
+            Integer i = positions.get(s);
+    		if (i == null) {
+                positions.put(s, union.size());
     			union.add(s);
-    		else {
-    			MiniREString str = union.get(union.indexOf(s));
-    			str.addAllMetadata(s.getAllMetadata());
-    		}
+            } else
+    			union.set(i, merge(union.get(i), s));
     	}
     	return union;
     }
+
+    /* Returns a copy of a string with the metadata of an equal string added. Neither string is modified,
+     * since the results of a find term may be shared. */
+    private static MiniREString merge(MiniREString s, MiniREString t)
+    {
+        MiniREString merged = new MiniREStringImpl(s.getString());
+        merged.addAllMetadata(s.getAllMetadata());
+        merged.addAllMetadata(t.getAllMetadata());
+        return merged;
+    }
+
+    /* Returns a map from each string in the list to its first occurrence in the list, for constant-time lookups. */
+    private static Map<MiniREString, MiniREString> index(List<MiniREString> list)
+    {
+        Map<MiniREString, MiniREString> index = new HashMap<MiniREString, MiniREString>(2 * list.size());
+        for (MiniREString s : list) {
+            if (!index.containsKey(s))
+                index.put(s, s);
+        }
+        return index;
+    }
     
-    /* Implements the find function. */
+    /* Implements the find function for a find node, whose regex is followed by one or more file names.
+     * The matches of a term that occurs again later are kept (read-only) until its last occurrence, and
+     * are shared by every occurrence for which the files it reads are unchanged. Every occurrence counts
+     * as a use of the term, and the matches kept for it are discarded at its last one. */
     private List<MiniREString> find(ASTNode node)
     {
-    	List<MiniREString> list = new ArrayList<MiniREString>();
-        String regex = node.getChild().getTokenString(); /* get string representation of regex from first child */
-        String filename = node.getChild().getNext().getTokenString();
-		RecursiveDescentParser parser = new RecursiveDescentParserImpl(new TokenizerImpl(regex), new LinkedHashSet<NFA>());
-        NFA nfa;
-		try {
-			nfa = parser.parse();
-		} catch (ParseException e) {
-            System.out.println("Invalid regular expression: \"" + regex + "\"" + "(" + e.getMessage() + ")");
-			return list;
-		}
-        Map<String, Set<State>> map = new LinkedHashMap<String, Set<State>>();
-        map.put(MiniRETableWalkerImpl.MATCH_TOKEN, nfa.getAcceptingStates());
-		DFA dfa = NFAToDFAConverter.convert(nfa, map);
+        String term = getTermText(node);
+        int uses;
+        List<MiniREString> cached;
+        String cachedKey;
+        synchronized (findCache) {
+            uses = (repeatedTerms.containsKey(term) ? repeatedTerms.get(term) : 0);
+            if (uses > 1)
+                repeatedTerms.put(term, uses - 1);
+            else
+                repeatedTerms.remove(term);
+            cached = findCache.remove(term);
+            cachedKey = findCacheKeys.remove(term);
+            findCacheFiles.remove(term);
+        }
+        if (0 == uses || !isQuietTerm(node)) {
+            List<MiniREString> list = prefetched.remove(node);
+            return (list != null ? list : find(node.getChild().getTokenString(), getFileNames(node)));
+        }
 
-        File file = new File(filename);
-		if (!file.exists()) {
-			System.out.println("The file you are trying to read (" + filename + ") does not exist.");
-			return list;
-        }
-        MiniRETableWalkerImpl walker = new MiniRETableWalkerImpl(dfa, file);
-		Map<String, MiniREString> matches = new LinkedHashMap<String, MiniREString>();
-		SourceToken token;
-		while (walker.hasNextToken()) {
-			token = walker.getNextToken();
-            if (MiniRETableWalkerImpl.MATCH_TOKEN.equals(token.getTokenType())) {
-			    String tokenString = token.getTokenString();
-                if (!matches.containsKey(tokenString)) {
-                    matches.put(tokenString, new MiniREStringImpl(tokenString,
-                            new MetadataImpl(file.toString(), walker.getBufferLineNumber(),
-                                    walker.getBufferIndex() - tokenString.length())));
-                } else {
-                    for (Metadata meta : matches.get(tokenString).getAllMetadata()) {
-                        if (filename.equals(meta.getFile())) {
-                            meta.addMatch(walker.getBufferLineNumber(), walker.getBufferIndex() - tokenString.length());
-                            break;
-                        }
-                    }
+        /* the matches are only reused if every file is the same as when they were found */
+        List<File> files = new ArrayList<File>();
+        StringBuilder key = new StringBuilder();
+        for (String filename : getFileNames(node)) {
+            for (String name : FileGlob.expand(filename)) {
+                File file = canonical(name);
+                files.add(file);
+                key.append(file.getPath()).append('\0').append(file.lastModified())
+                        .append('\0').append(file.length()).append('\0');
+            }
+        }
+        List<MiniREString> list = (key.toString().equals(cachedKey) ? cached : null);
+        if (list == null)
+            list = prefetched.get(node);
+        prefetched.remove(node);
+        if (list == null)
+            list = Collections.unmodifiableList(find(node.getChild().getTokenString(), getFileNames(node)));
+        synchronized (findCache) {
+            /* another occurrence may have been the last use meanwhile, if operands are evaluated in parallel */
+            if (uses > 1 && repeatedTerms.containsKey(term)) {
+                findCache.put(term, list);
+                findCacheKeys.put(term, key.toString());
+                findCacheFiles.put(term, files);
+            }
+        }
+        return list;
+    }
+
+    /* Returns the text that identifies a find term: its regex and file names. */
+    private static String getTermText(ASTNode find)
+    {
+        StringBuilder text = new StringBuilder(find.getChild().getTokenString());
+        for (String filename : getFileNames(find))
+            text.append('\0').append(filename);
+        return text.toString();
+    }
+
+    /* Discards the cached matches of every find term that reads the specified file, which is about to be written. */
+    private void invalidateFindCache(String filename)
+    {
+        File file = canonical(filename);
+        synchronized (findCache) {
+            for (Iterator<Map.Entry<String, List<File>>> it = findCacheFiles.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, List<File>> entry = it.next();
+                if (entry.getValue().contains(file)) {
+                    findCache.remove(entry.getKey());
+                    findCacheKeys.remove(entry.getKey());
+                    it.remove();
                 }
             }
-		}
+        }
+    }
 
+    /* Implements the find function. Each file name may be a glob pattern; the files are scanned concurrently. */
+    private List<MiniREString> find(String regex, List<String> filenames)
+    {
+    	List<MiniREString> list = new ArrayList<MiniREString>();
+        Recognizer recognizer = getRecognizer(regex);
+        List<String> names = new ArrayList<String>();
+        List<File> files = getFiles(filenames, names);
+        if (recognizer == null || files.isEmpty())
+            return list;
+		Map<String, MiniREString> matches = MatchFinder.find(recognizer, files, names);
 		for (MiniREString s : matches.values())
 			list.add(s);
 
 		return list;
     }
 
-    @SuppressWarnings("unchecked")
-    /* Implements the replace function. */
-    private void replace(List<MiniREString> matches, String replace, String source,
-                                String dest, boolean recursive) throws IOException
+    /* Counts the matches of a find node (without a set operation) without storing them. */
+    private long countFind(ASTNode node)
+    {
+        Recognizer recognizer = getRecognizer(node.getChild().getTokenString());
+        List<File> files = getFiles(getFileNames(node), new ArrayList<String>());
+        if (recognizer == null || files.isEmpty())
+            return 0;
+        return MatchFinder.count(recognizer, files);
+    }
+
+    /* Counts the matches of each distinct string for a single find term, without storing their locations. */
+    private Map<String, Long> tallyFind(ASTNode node)
+    {
+        Recognizer recognizer = getRecognizer(node.getChild().getTokenString());
+        List<File> files = getFiles(getFileNames(node), new ArrayList<String>());
+        if (recognizer == null || files.isEmpty())
+            return new LinkedHashMap<String, Long>();
+        return MatchFinder.tally(recognizer, files);
+    }
+
+    /* Prints the distinct matches of a find node (without a set operation) as they are found. */
+    private void printFind(ASTNode node)
+    {
+        Recognizer recognizer = getRecognizer(node.getChild().getTokenString());
+        List<File> files = getFiles(getFileNames(node), new ArrayList<String>());
+        if (recognizer == null || files.isEmpty())
+            return;
+        final Set<String> printed = new HashSet<String>();
+        final OutputBuffer out = out();
+        MatchFinder.stream(recognizer, files, new MatchFinder.MatchHandler() {
+            @Override
+            public void match(String string, int line, int index)
+            {
+                if (printed.add(string)) {
+                    out.print(string);
+                    out.print(' ');
+                }
+            }
+        });
+    }
+
+    /* Returns the file names of a find node. */
+    private static List<String> getFileNames(ASTNode node)
+    {
+        List<String> filenames = new ArrayList<String>();
+        for (ASTNode file = node.getChild().getNext(); file != null && ASTNodeType.FILENAME == file.getNodeType();
+                file = file.getNext())
+            filenames.add(file.getTokenString());
+        return filenames;
+    }
+
+    /* Returns the compiled regex, or prints a message and returns null if it is invalid. */
+    private Recognizer getRecognizer(String regex)
+    {
+		try {
+			return RecognizerCache.getSharedCache().get(regex);
+		} catch (ParseException e) {
+            out().println("Invalid regular expression: \"" + regex + "\"" + "(" + e.getMessage() + ")");
+			return null;
+		}
+    }
+
+    /* Expands glob patterns and returns the distinct files that exist, adding their names to existing.
+     * Prints a message for every file (or pattern) that does not. */
+    private List<File> getFiles(List<String> filenames, List<String> existing)
+    {
+        Set<String> names = new LinkedHashSet<String>();
+        for (String filename : filenames) {
+            List<String> expanded = FileGlob.expand(filename);
+            if (expanded.isEmpty())
+                out().println("The file you are trying to read (" + filename + ") does not exist.");
+            names.addAll(expanded);
+        }
+        List<File> files = new ArrayList<File>();
+        for (String filename : names) {
+            File file = new File(filename);
+            if (!file.exists())
+                out().println("The file you are trying to read (" + filename + ") does not exist.");
+            else {
+                files.add(file);
+                existing.add(filename);
+            }
+        }
+        return files;
+    }
+
+    /* Implements the replace function. The source file is rewritten in a single pass over its matches. */
+    private void replace(String regex, String replace, String source, String dest, boolean recursive)
+            throws IOException
     {
         File sourceFile = new File(source);
         File destFile = new File(dest);
-        int numReplaced = 0;
+        Recognizer recognizer = getRecognizer(regex);
+        getFiles(Collections.singletonList(source), new ArrayList<String>());   /* reports a missing file */
 
         if (!sourceFile.exists())
             throw new IllegalStateException("Source file \"" + source + "\"does not exist.");
         if (!destFile.exists() && !destFile.createNewFile())
             throw new IllegalStateException("Unable to create new file \"" + dest + "\".");
+        if (recognizer == null)
+            return;
 
-        ArrayList<String> lines = new ArrayList<String>();
-        Scanner scan = new Scanner(sourceFile);
-        while (scan.hasNextLine())
-            lines.add(scan.nextLine());
-
-        ArrayList<MiniREString> reversedMatches = new ArrayList<MiniREString>();
-        MiniREString[] arr = new MiniREString[matches.size()];
-        arr = matches.toArray(arr);
-        for (int j = arr.length - 1; j >= 0; j--)
-            reversedMatches.add(arr[j]);
-
-        for (MiniREString match : reversedMatches) {
-            for (Metadata data : match.getAllMetadata()) {
-                if (source.equals(data.getFile())) {
-                    Set<List<Integer>> reversed = new LinkedHashSet<List<Integer>>();
-                    List[] array = new ArrayList[data.getMatches().size()];
-                    array = data.getMatches().toArray(array);
-                    for (int i = array.length - 1; i >= 0; i--)
-                        reversed.add(array[i]);
-
-                    for (List<Integer> place : reversed) {
-                        String line = lines.get(place.get(0) - 1);
-                        String replaced = "";
-                        if (place.get(1) > 0)
-                            replaced += line.substring(0, place.get(1));
-                        replaced += replace;
-                        if (place.get(1) + match.getString().length() < line.length())
-                            replaced += line.substring(place.get(1) + match.getString().length());
-                        lines.set(place.get(0) - 1, replaced);
-                        numReplaced++;
-                    }
+        if (!recursive)
+            Replacer.replace(recognizer, sourceFile, destFile, replace);
+        else {
+            try {
+                Replacer.replaceRecursively(recognizer, sourceFile, destFile, replace, maxReplaceIterations);
+            } catch (IllegalStateException except) {
+                out().println("Recursive replace of '" + regex + "' does not terminate: " + except.getMessage());
+            }
+        }
+    }
+
+
+
+    /**
+     * Evaluates a single statement, printing to a buffer, once the statements it depends on have been
+     * evaluated; then schedules the statements that depend on it. A statement that depends on one that
+     * failed is not evaluated.
+     */
+    private class StatementTask implements Runnable
+    {
+
+        private final ASTNode node;
+        private final ExecutorService pool;
+        private final List<StatementTask> dependents;
+        private final CaptureBuffer printed;
+        private int unresolved;
+        private boolean done, skipped;
+        private Throwable failure;
+
+        /* Creates a task to evaluate the statement on the pool. */
+        private StatementTask(ASTNode node, ExecutorService pool)
+        {
+            this.node = node;
+            this.pool = pool;
+            dependents = new ArrayList<StatementTask>();
+            printed = new CaptureBuffer(CAPTURE_MEMORY_LIMIT);
+            unresolved = 0;
+            done = false;
+            skipped = false;
+            failure = null;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!skipped && !aborted) {
+                OutputBuffer stream = new OutputBuffer(printed, CAPTURE_CAPACITY);
+                OutputBuffer previous = output.get();
+                output.set(stream);
+                try {
+                    evaluateNode(node);
+                } catch (Throwable except) {
+                    failure = except;
+                } finally {
+                    output.set(previous);
+                    stream.flush();
                 }
             }
+            synchronized (this) {
+                done = true;
+                if (aborted)
+                    printed.close();    /* it will never be printed */
+                notifyAll();
+            }
+            for (StatementTask dependent : dependents)
+                dependent.resolve(skipped || failure != null);
         }
 
-        FileWriter writer = new FileWriter(destFile);
-        for (String line : lines)
-            writer.write(line);
-        writer.close();
+        /* Records that one of the statements this one depends on has been evaluated (or failed), and runs
+         * this one if it was the last. */
+        private void resolve(boolean failed)
+        {
+            boolean ready;
+            synchronized (this) {
+                skipped |= failed;
+                ready = (0 == --unresolved);
+            }
+            if (ready)
+                schedule();
+        }
 
-        if (recursive && numReplaced > 0)
-            replace(matches, replace, dest, dest, recursive);
-    }
+        /* Discards what the statement printed, if it has been evaluated; otherwise that happens once it has been. */
+        private synchronized void discard()
+        {
+            if (done)
+                printed.close();
+        }
+
+        /* Runs the task on the pool, or at once if it will not be evaluated. */
+        private void schedule()
+        {
+            if (!skipped && !aborted) {
+                try {
+                    pool.execute(this);
+                    return;
+                } catch (RejectedExecutionException except) {
+                    /* the pool has been shut down after a failure */
+                }
+            }
+            synchronized (this) {
+                skipped = true;
+            }
+            run();
+        }
+
+    }   /* end nested StatementTask class */
+
+
+    /**
+     * Fork/join task that evaluates the remaining operands of a chain of set operations, printing to a
+     * buffer that is printed once the operands before it have been evaluated.
+     */
+    private class OperandTask extends RecursiveTask<List<MiniREString>>
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ASTNode node;
+        private final CaptureBuffer printed;
+        private boolean started, finished, discarded;
+        private Throwable failure;
+
+        /* Creates a task to evaluate the find node and the operands that follow it. */
+        private OperandTask(ASTNode node)
+        {
+            this.node = node;
+            printed = new CaptureBuffer(CAPTURE_MEMORY_LIMIT);
+            started = false;
+            finished = false;
+            discarded = false;
+            failure = null;
+        }
+
+        @Override
+        protected List<MiniREString> compute()
+        {
+            synchronized (this) {
+                if (discarded)
+                    return null;
+                started = true;
+            }
+            try {
+                return evaluate();
+            } finally {
+                synchronized (this) {
+                    finished = true;
+                    if (discarded)
+                        printed.close();    /* it will never be printed */
+                }
+            }
+        }
+
+        /* Evaluates the operands, printing to the buffer. */
+        private List<MiniREString> evaluate()
+        {
+            OutputBuffer stream = new OutputBuffer(printed, CAPTURE_CAPACITY);
+            OutputBuffer previous = output.get();   /* the task may run in a thread that is joining it */
+            output.set(stream);
+            try {
+                return evaluateFindNode(node);
+            } catch (Throwable except) {
+                failure = except;
+                return null;
+            } finally {
+                output.set(previous);
+                stream.flush();
+            }
+        }
+
+        /* Waits for the operands to be evaluated, prints what they printed, and returns their result. */
+        private List<MiniREString> getResult()
+        {
+            List<MiniREString> result = join();
+            printed.copyTo(out());
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException)failure;
+            else if (failure instanceof Error)
+                throw (Error)failure;
+            return result;
+        }
+
+        /* Discards the operands: they are not evaluated if they have not started, and what they printed is
+         * discarded once they have been (or at once, if they are not running). */
+        private void discard()
+        {
+            cancel(false);
+            synchronized (this) {
+                discarded = true;
+                if (!started || finished)
+                    printed.close();
+            }
+        }
+
+    }   /* end nested OperandTask class */
 
-}
\ No newline at end of file
+}   /* end ASTEvaluator class */
@@ -1,5 +1,8 @@
 package com.williamdye.rex.ast;
 
+import com.williamdye.rex.util.*;
+
+import java.io.*;
 import java.util.*;
 
 /**
@@ -46,4 +49,111 @@ public class ASTImpl implements AST
         nodes.add(start);
     }
 
+    @Override
+    public Set<ASTNode> getDeadAssignments()
+    {
+        List<ASTNode> statements = new ArrayList<ASTNode>();
+        for (ASTNode node = start; node != null; node = node.getNext())
+            statements.add(node);
+
+        /* the statements are linear, so one backward pass finds the identifiers live after each one */
+        Set<ASTNode> dead = Collections.newSetFromMap(new IdentityHashMap<ASTNode, Boolean>());
+        Set<String> live = new HashSet<String>();
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            ASTNode node = statements.get(i);
+            if (ASTNodeType.ASSIGN == node.getNodeType()) {
+                ASTNode value = node.getChild().getNext();
+                if (ASTNodeType.COUNT != value.getNodeType() && !live.remove(node.getChild().getTokenString())) {
+                    dead.add(node);
+                    continue;
+                }
+                addReads(value, live);
+            } else
+                addReads(node.getChild(), live);
+        }
+        return dead;
+    }
+
+    @Override
+    public Map<ASTNode, Set<ASTNode>> getDependencies()
+    {
+        Map<ASTNode, Set<ASTNode>> dependencies = new LinkedHashMap<ASTNode, Set<ASTNode>>();
+        Map<String, ASTNode> lastAssignment = new HashMap<String, ASTNode>();
+        Map<String, List<ASTNode>> readers = new HashMap<String, List<ASTNode>>();   /* since the last assignment */
+        Map<File, ASTNode> lastWrite = new HashMap<File, ASTNode>();
+        List<ASTNode> replaces = new ArrayList<ASTNode>();
+
+        for (ASTNode node = start; node != null; node = node.getNext()) {
+            Set<ASTNode> depends = new LinkedHashSet<ASTNode>();
+            if (ASTNodeType.REPLACE == node.getNodeType() || ASTNodeType.RECURSIVE_REPLACE == node.getNodeType()) {
+                depends.addAll(dependencies.keySet());
+                String dest = node.getChild().getNext().getNext().getChild().getNext().getTokenString();
+                lastWrite.put(canonical(dest), node);
+                replaces.add(node);
+            } else {
+                boolean assign = (ASTNodeType.ASSIGN == node.getNodeType());
+                ASTNode body = (assign ? node.getChild().getNext() : node.getChild());
+                Set<String> reads = new HashSet<String>();
+                addReads(body, reads);
+                for (String id : reads) {
+                    if (lastAssignment.containsKey(id))
+                        depends.add(lastAssignment.get(id));
+                    if (!readers.containsKey(id))
+                        readers.put(id, new ArrayList<ASTNode>());
+                    readers.get(id).add(node);
+                }
+                if (assign) {
+                    String id = node.getChild().getTokenString();
+                    if (lastAssignment.containsKey(id))
+                        depends.add(lastAssignment.get(id));
+                    if (readers.containsKey(id))
+                        depends.addAll(readers.remove(id));
+                    lastAssignment.put(id, node);
+                }
+                List<String> filenames = new ArrayList<String>();
+                addFileNames(body, filenames);
+                for (String filename : filenames) {
+                    if (FileGlob.isPattern(filename))
+                        depends.addAll(replaces);
+                    else if (lastWrite.containsKey(canonical(filename)))
+                        depends.add(lastWrite.get(canonical(filename)));
+                }
+                depends.remove(node);   /* a statement such as "a = a" reads what it assigns */
+            }
+            dependencies.put(node, depends);
+        }
+        return dependencies;
+    }
+
+    /* Adds the file names read by a node, its following siblings and all of their descendants. */
+    private static void addFileNames(ASTNode node, List<String> filenames)
+    {
+        for (; node != null; node = node.getNext()) {
+            if (ASTNodeType.FILENAME == node.getNodeType())
+                filenames.add(node.getTokenString());
+            addFileNames(node.getChild(), filenames);
+        }
+    }
+
+    /* Returns the canonical form of the named file, or its absolute form if that cannot be determined. */
+    private static File canonical(String filename)
+    {
+        File file = new File(filename);
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException except) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /* Adds the identifiers read by a node, its following siblings and all of their descendants. */
+    private static void addReads(ASTNode node, Set<String> live)
+    {
+        for (; node != null; node = node.getNext()) {
+            if (ASTNodeType.IDENTIFIER == node.getNodeType())
+                live.add(node.getTokenString());
+            addReads(node.getChild(), live);
+        }
+    }
+
 }
@@ -0,0 +1,690 @@
+package com.williamdye.rex.ast;
+
+import com.williamdye.rex.automata.*;
+import com.williamdye.rex.scanner.*;
+import com.williamdye.rex.string.*;
+import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds every match of a recognizer in one or more files, which are scanned concurrently on a
+ * fork/join pool. Because a match never spans a line separator, a large file is further split into
+ * line-aligned chunks that are scanned in parallel; the per-chunk results are then merged in file
+ * order, so the strings, their order of first occurrence, and the line numbers and indices of their
+ * matches are exactly those of a single sequential scan. Matches can also be counted (in total, or for
+ * each distinct string), or handed to a <code>MatchHandler</code> one at a time, without being stored.
+ * @author William Dye
+ */
+public class MatchFinder
+{
+
+    /**
+     * The smallest chunk of a file that is scanned by a single task. Files smaller than two chunks,
+     * and all files on a single processor, are scanned sequentially.
+     */
+    public static final long MIN_CHUNK_SIZE = 1 << 23;
+
+    /** The largest chunk of a file that is scanned by a single task. */
+    public static final long MAX_CHUNK_SIZE = 1 << 30;
+
+    private static final ForkJoinPool pool = new ForkJoinPool();
+
+    /* The number of passes made over a file, whether it is scanned whole or in chunks. */
+    private static final AtomicLong passes = new AtomicLong();
+
+    /* What a scan does with the matches it finds. */
+    private enum Mode { COLLECT, COUNT, TALLY }
+
+    private MatchFinder() { /* prevent instantiation */ }
+
+    /**
+     * Receives the matches found in a file, one at a time, in the order in which they occur.
+     */
+    public interface MatchHandler
+    {
+
+        /**
+         * Handles a single match.
+         * @param string the matched string
+         * @param line the line number (1-indexed) of the match
+         * @param index the index (within the line) at which the match starts
+         */
+        public void match(String string, int line, int index);
+
+    }
+
+    /**
+     * Accessor for the fork/join pool on which files are scanned. Tasks that find matches can be run on
+     * it, so that their own scans are split among its workers rather than waiting for them.
+     * @return the pool shared by all scans
+     */
+    public static ForkJoinPool getPool()
+    {
+        return pool;
+    }
+
+    /**
+     * Returns every distinct string in <code>file</code> matched by <code>recognizer</code>, in order of
+     * first occurrence, along with the location of every match.
+     * @param recognizer the recognizer to match
+     * @param file the file to search
+     * @param filename the name of the file, as written in the MiniRE script
+     * @return a map from each matched string to its <code>MiniREString</code>
+     */
+    public static Map<String, MiniREString> find(Recognizer recognizer, File file, String filename)
+    {
+        return merge(scan(recognizer, file, filename, Mode.COLLECT), file, filename);
+    }
+
+    /**
+     * Finds the matches of several recognizers in the same file in a single pass: the file is read one
+     * chunk at a time, and every recognizer scans a chunk (concurrently) before the next one is read.
+     * Each recognizer still tokenizes the file on its own, so the result for each one is exactly what
+     * <code>find(recognizer, file, filename)</code> would return.
+     * @param recognizers the recognizers to match
+     * @param file the file to search
+     * @param filename the name of the file, as written in the MiniRE script
+     * @return for each recognizer (in order), a map from each matched string to its <code>MiniREString</code>
+     */
+    public static List<Map<String, MiniREString>> find(List<Recognizer> recognizers, File file, String filename)
+    {
+        return find(recognizers, file, filename, MappedCharBuffer.WINDOW_SIZE);
+    }
+
+    /* Returns the number of passes made over a file (by any recognizers) since the class was loaded. */
+    static long getPasses()
+    {
+        return passes.get();
+    }
+
+    /* Finds the matches of several recognizers in a single pass over chunks of about chunkSize bytes. */
+    static List<Map<String, MiniREString>> find(List<Recognizer> recognizers, File file, String filename, long chunkSize)
+    {
+        List<Map<String, MiniREString>> results = new ArrayList<Map<String, MiniREString>>();
+        try {
+            for (ChunkScan[] chunks : scanSinglePass(recognizers, file, filename, chunkSize))
+                results.add(merge(chunks, file, filename));
+        } catch (IOException except) {
+            /* fall back to one scan per recognizer, which reports unreadable files itself */
+            results.clear();
+            for (Recognizer recognizer : recognizers)
+                results.add(find(recognizer, file, filename));
+        }
+        return results;
+    }
+
+    /* Finds the matches in the file split into at most numChunks line-aligned chunks, however small, which
+     * are scanned in parallel (if the pool has more than one worker). */
+    static Map<String, MiniREString> find(Recognizer recognizer, File file, String filename, int numChunks)
+            throws IOException
+    {
+        return merge(scanParallel(recognizer, file, filename, Mode.COLLECT, numChunks), file, filename);
+    }
+
+    /**
+     * Returns every distinct string in any of the <code>files</code> matched by <code>recognizer</code>, in order
+     * of first occurrence (taking the files in order), along with the location of every match. The files are
+     * scanned concurrently; a string found in several files has one <code>Metadata</code> per file.
+     * @param recognizer the recognizer to match
+     * @param files the files to search, which must be distinct
+     * @param filenames the names of the files, as written in (or expanded from) the MiniRE script
+     * @return a map from each matched string to its <code>MiniREString</code>
+     */
+    public static Map<String, MiniREString> find(Recognizer recognizer, List<File> files, List<String> filenames)
+    {
+        if (files.size() == 1)
+            return find(recognizer, files.get(0), filenames.get(0));
+        FileScan[] scans = scan(recognizer, files, filenames, Mode.COLLECT);
+
+        Map<String, MiniREString> matches = new LinkedHashMap<String, MiniREString>();
+        for (FileScan scan : scans) {
+            for (MiniREString s : scan.matches.values()) {
+                MiniREString existing = matches.get(s.getString());
+                if (existing == null)
+                    matches.put(s.getString(), s);
+                else
+                    existing.addAllMetadata(s.getAllMetadata());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the number of matches of <code>recognizer</code> in <code>file</code>, without storing them.
+     * @param recognizer the recognizer to match
+     * @param file the file to search
+     * @return the number of matches
+     */
+    public static long count(Recognizer recognizer, File file)
+    {
+        long count = 0;
+        for (ChunkScan chunk : scan(recognizer, file, file.toString(), Mode.COUNT))
+            count += ((Counter)chunk.handler).count;
+        return count;
+    }
+
+    /* Counts the matches in the file split into at most numChunks line-aligned chunks, however small. */
+    static long count(Recognizer recognizer, File file, int numChunks) throws IOException
+    {
+        long count = 0;
+        for (ChunkScan chunk : scanParallel(recognizer, file, file.toString(), Mode.COUNT, numChunks))
+            count += ((Counter)chunk.handler).count;
+        return count;
+    }
+
+    /**
+     * Returns the total number of matches of <code>recognizer</code> in the <code>files</code>, without storing them.
+     * The files are scanned concurrently.
+     * @param recognizer the recognizer to match
+     * @param files the files to search, which must be distinct
+     * @return the number of matches
+     */
+    public static long count(Recognizer recognizer, List<File> files)
+    {
+        if (files.size() == 1)
+            return count(recognizer, files.get(0));
+        List<String> filenames = new ArrayList<String>();
+        for (File file : files)
+            filenames.add(file.toString());
+        long count = 0;
+        for (FileScan scan : scan(recognizer, files, filenames, Mode.COUNT))
+            count += scan.count;
+        return count;
+    }
+
+    /**
+     * Returns the number of matches of each distinct string in <code>file</code> matched by <code>recognizer</code>,
+     * in order of first occurrence, without storing the location of any match.
+     * @param recognizer the recognizer to match
+     * @param file the file to search
+     * @return a map from each matched string to its number of matches
+     */
+    public static Map<String, Long> tally(Recognizer recognizer, File file)
+    {
+        Map<String, Long> tally = new LinkedHashMap<String, Long>();
+        for (ChunkScan chunk : scan(recognizer, file, file.toString(), Mode.TALLY))
+            addTally(tally, ((Tally)chunk.handler).counts);
+        return tally;
+    }
+
+    /**
+     * Returns the number of matches of each distinct string in any of the <code>files</code> matched by
+     * <code>recognizer</code>, in order of first occurrence (taking the files in order), without storing the
+     * location of any match. The files are scanned concurrently.
+     * @param recognizer the recognizer to match
+     * @param files the files to search, which must be distinct
+     * @return a map from each matched string to its total number of matches
+     */
+    public static Map<String, Long> tally(Recognizer recognizer, List<File> files)
+    {
+        if (files.size() == 1)
+            return tally(recognizer, files.get(0));
+        List<String> filenames = new ArrayList<String>();
+        for (File file : files)
+            filenames.add(file.toString());
+        Map<String, Long> tally = new LinkedHashMap<String, Long>();
+        for (FileScan scan : scan(recognizer, files, filenames, Mode.TALLY))
+            addTally(tally, scan.tally);
+        return tally;
+    }
+
+    /**
+     * Passes every match of <code>recognizer</code> in the <code>files</code> to <code>handler</code> as soon as
+     * it is found, taking the files in order. Nothing is stored, and the files are scanned sequentially.
+     * Each file is closed once it has been scanned, even if the handler throws an exception.
+     * @param recognizer the recognizer to match
+     * @param files the files to search
+     * @param handler the handler that receives the matches
+     */
+    public static void stream(Recognizer recognizer, List<File> files, MatchHandler handler)
+    {
+        for (File file : files) {
+            passes.incrementAndGet();
+            try (MappedCharBuffer input = new MappedCharBuffer(file)) {
+                scan(new MiniRETableWalkerImpl(recognizer, input), handler);
+            }
+        }
+    }
+
+    /* Scans the files concurrently, collecting, counting or tallying the matches in each one. */
+    private static FileScan[] scan(Recognizer recognizer, List<File> files, List<String> filenames, Mode mode)
+    {
+        FileScan[] scans = new FileScan[files.size()];
+        for (int i = 0; i < scans.length; i++)
+            scans[i] = new FileScan(recognizer, files.get(i), filenames.get(i), mode);
+        run(new FileRange(scans, 0, scans.length));
+        return scans;
+    }
+
+    /* Scans the file, in parallel chunks if it is large enough, collecting, counting or tallying the matches. */
+    private static ChunkScan[] scan(Recognizer recognizer, File file, String filename, Mode mode)
+    {
+        long size = file.length();
+        int numChunks = (int)Math.min(Math.max(size / MIN_CHUNK_SIZE, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE),
+                4L * pool.getParallelism());
+        if (numChunks > 1 && pool.getParallelism() > 1) {
+            try {
+                return scanParallel(recognizer, file, filename, mode, numChunks);
+            } catch (IOException except) {
+                /* fall back to a sequential scan, which reports unreadable files itself */
+            }
+        }
+        ChunkScan whole = new ChunkScan(recognizer, file, null, newHandler(file, filename, mode));
+        whole.scan();
+        return new ChunkScan[] {whole};
+    }
+
+    /* Splits the file into line-aligned chunks and scans them in parallel. */
+    private static ChunkScan[] scanParallel(Recognizer recognizer, File file, String filename, Mode mode,
+                                            int numChunks) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            passes.incrementAndGet();
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            long[] bounds = new long[numChunks + 1];
+            int n = 0;
+            for (int i = 1; i < numChunks; i++) {
+                long bound = nextLineStart(channel, size * i / numChunks, size);
+                if (bound > bounds[n] && bound < size)
+                    bounds[++n] = bound;
+            }
+            bounds[++n] = size;
+            for (int i = 0; i < n; i++) {
+                if (bounds[i + 1] - bounds[i] > Integer.MAX_VALUE)
+                    throw new IOException("Line too long to scan in chunks");
+            }
+
+            ChunkScan[] chunks = new ChunkScan[n];
+            for (int i = 0; i < n; i++)
+                chunks[i] = new ChunkScan(recognizer, file,
+                        channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]),
+                        newHandler(file, filename, mode));
+            if (Mode.COLLECT == mode) {
+                /* line numbers are only needed if the matches are kept */
+                run(new ChunkRange(chunks, 0, n, true));
+                for (int i = 1; i < n; i++)
+                    chunks[i].firstLine = chunks[i - 1].firstLine + chunks[i - 1].numLines;
+            }
+            run(new ChunkRange(chunks, 0, n, false));
+            return chunks;
+        }
+    }
+
+    /* Reads the file one chunk (of about chunkSize bytes) at a time, scanning each chunk with every recognizer
+     * before the next is read. Returns the chunk scans of each recognizer. */
+    private static List<ChunkScan[]> scanSinglePass(List<Recognizer> recognizers, File file, String filename,
+                                                    long chunkSize) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            passes.incrementAndGet();
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            List<Long> bounds = new ArrayList<Long>();
+            bounds.add(0L);
+            for (long bound = nextLineStart(channel, chunkSize, size); bound < size;
+                    bound = nextLineStart(channel, bound + chunkSize, size))
+                bounds.add(bound);
+            bounds.add(size);
+            final int n = bounds.size() - 1;
+
+            List<ChunkScan[]> scans = new ArrayList<ChunkScan[]>();
+            for (int r = 0; r < recognizers.size(); r++)
+                scans.add(new ChunkScan[n]);
+            int firstLine = 1;
+            for (int i = 0; i < n; i++) {
+                long length = bounds.get(i + 1) - bounds.get(i);
+                if (length > Integer.MAX_VALUE)
+                    throw new IOException("Line too long to scan in chunks");
+                ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, bounds.get(i), length);
+                ChunkScan[] chunk = new ChunkScan[recognizers.size()];
+                for (int r = 0; r < chunk.length; r++) {
+                    chunk[r] = new ChunkScan(recognizers.get(r), file, bytes, newHandler(file, filename, Mode.COLLECT));
+                    chunk[r].firstLine = firstLine;
+                    scans.get(r)[i] = chunk[r];
+                }
+                run(new ChunkRange(chunk, 0, chunk.length, false));
+                if (i + 1 < n) {
+                    chunk[0].countLines();
+                    firstLine += chunk[0].numLines;
+                }
+            }
+            return scans;
+        }
+    }
+
+    /* Merges the matches of a file's chunks, in order. */
+    private static Map<String, MiniREString> merge(ChunkScan[] chunks, File file, String filename)
+    {
+        /* the chunks' line numbers are already absolute, so later chunks only add to strings seen earlier */
+        Map<String, MiniREString> matches = ((Collector)chunks[0].handler).matches;
+        for (int i = 1; i < chunks.length; i++) {
+            for (MiniREString s : ((Collector)chunks[i].handler).matches.values()) {
+                if (!matches.containsKey(s.getString()))
+                    matches.put(s.getString(), s);
+                else {
+                    for (Metadata meta : s.getAllMetadata()) {
+                        for (int j = 0; j < meta.getMatchCount(); j++)
+                            record(matches, s.getString(), file, filename, meta.getLine(j), meta.getIndex(j));
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    /* Adds the number of matches of each string in a tally to another. */
+    private static void addTally(Map<String, Long> tally, Map<String, Long> counts)
+    {
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            Long count = tally.get(entry.getKey());
+            tally.put(entry.getKey(), (count == null ? entry.getValue() : count + entry.getValue()));
+        }
+    }
+
+    /* Returns a handler that collects, counts or tallies matches. */
+    private static MatchHandler newHandler(File file, String filename, Mode mode)
+    {
+        switch (mode) {
+            case COUNT:
+                return new Counter();
+            case TALLY:
+                return new Tally();
+            default:
+                return new Collector(file, filename);
+        }
+    }
+
+    /* Runs the task on the pool, joining the pool's work if the current thread is already one of its workers. */
+    private static void run(ForkJoinTask<?> task)
+    {
+        if (ForkJoinTask.getPool() == pool)
+            task.invoke();
+        else
+            pool.invoke(task);
+    }
+
+    /* Returns the position just past the first line separator at or after pos, or size if there is none. */
+    private static long nextLineStart(FileChannel channel, long pos, long size) throws IOException
+    {
+        ByteBuffer block = ByteBuffer.allocate(1 << 12);
+        boolean carriageReturn = false;
+        while (pos < size) {
+            block.clear();
+            int read = channel.read(block, pos);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++, pos++) {
+                byte b = block.get(i);
+                if (carriageReturn)
+                    return ('\n' == b ? pos + 1 : pos);
+                if ('\n' == b)
+                    return pos + 1;
+                carriageReturn = ('\r' == b);
+            }
+        }
+        return size;
+    }
+
+    /* Scans every token from the walker and passes the matches to the handler. */
+    private static void scan(MiniRETableWalkerImpl walker, MatchHandler handler)
+    {
+        SourceToken token;
+        while (walker.hasNextToken()) {
+            token = walker.getNextToken();
+            if (MiniRETableWalkerImpl.MATCH_TOKEN.equals(token.getTokenType())) {
+                String tokenString = token.getTokenString();
+                handler.match(tokenString, walker.getBufferLineNumber(), walker.getBufferIndex() - tokenString.length());
+            }
+        }
+    }
+
+    /* Records a single match of the specified string. */
+    private static void record(Map<String, MiniREString> matches, String string, File file, String filename,
+                               int line, int index)
+    {
+        MiniREString s = matches.get(string);
+        if (s == null)
+            matches.put(string, new MiniREStringImpl(string, new MetadataImpl(file.toString(), line, index)));
+        else {
+            for (Metadata meta : s.getAllMetadata()) {
+                if (filename.equals(meta.getFile())) {
+                    meta.addMatch(line, index);
+                    break;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Handler that collects the distinct matched strings of a single file, with the location of every match.
+     */
+    private static class Collector implements MatchHandler
+    {
+
+        private final File file;
+        private final String filename;
+        private final Map<String, MiniREString> matches;
+
+        /* Creates a collector for matches in the specified file. */
+        private Collector(File file, String filename)
+        {
+            this.file = file;
+            this.filename = filename;
+            matches = new LinkedHashMap<String, MiniREString>();
+        }
+
+        @Override
+        public void match(String string, int line, int index)
+        {
+            record(matches, string, file, filename, line, index);
+        }
+
+    }   /* end nested Collector class */
+
+
+    /**
+     * Handler that only counts matches.
+     */
+    private static class Counter implements MatchHandler
+    {
+
+        private long count;
+
+        @Override
+        public void match(String string, int line, int index)
+        {
+            count++;
+        }
+
+    }   /* end nested Counter class */
+
+
+    /**
+     * Handler that counts the matches of each distinct string.
+     */
+    private static class Tally implements MatchHandler
+    {
+
+        private final Map<String, Long> counts;
+
+        /* Creates a tally with no matches. */
+        private Tally()
+        {
+            counts = new LinkedHashMap<String, Long>();
+        }
+
+        @Override
+        public void match(String string, int line, int index)
+        {
+            Long count = counts.get(string);
+            counts.put(string, (count == null ? 1L : count + 1));
+        }
+
+    }   /* end nested Tally class */
+
+
+    /**
+     * Scans a single chunk of a file (or the whole file). The lines in a chunk are counted first, so
+     * that the chunk can be scanned with the line numbers it has within the whole file.
+     */
+    private static class ChunkScan
+    {
+
+        private final Recognizer recognizer;
+        private final File file;
+        private final ByteBuffer bytes;
+        private final MatchHandler handler;
+        private int firstLine, numLines;
+
+        /* Creates a task to scan the specified bytes of the file, or the whole file if bytes is null. */
+        private ChunkScan(Recognizer recognizer, File file, ByteBuffer bytes, MatchHandler handler)
+        {
+            this.recognizer = recognizer;
+            this.file = file;
+            this.bytes = bytes;
+            this.handler = handler;
+            firstLine = 1;
+            numLines = 0;
+        }
+
+        /* Counts the line separators in the chunk; "\r\n" counts once, and a chunk never ends between the two. */
+        private void countLines()
+        {
+            int count = 0, limit = bytes.limit();
+            for (int i = 0; i < limit; i++) {
+                byte b = bytes.get(i);
+                if ('\n' == b || ('\r' == b && (i + 1 == limit || '\n' != bytes.get(i + 1))))
+                    count++;
+            }
+            numLines = count;
+        }
+
+        /* Scans the chunk, passing its matches to the handler. A whole file is closed once it has been scanned. */
+        private void scan()
+        {
+            if (bytes != null) {
+                MatchFinder.scan(new MiniRETableWalkerImpl(recognizer, new ByteBufferInput(bytes, firstLine)), handler);
+                return;
+            }
+            passes.incrementAndGet();
+            try (MappedCharBuffer input = new MappedCharBuffer(file)) {
+                MatchFinder.scan(new MiniRETableWalkerImpl(recognizer, input), handler);
+            }
+        }
+
+    }   /* end nested ChunkScan class */
+
+
+    /**
+     * Fork/join task that counts the lines in (or scans) a range of chunks, splitting the range in half
+     * until it holds a single chunk.
+     */
+    private static class ChunkRange extends RecursiveAction
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ChunkScan[] chunks;
+        private final int from, to;
+        private final boolean countingLines;
+
+        /* Creates a task for the chunks from index from (inclusive) to index to (exclusive). */
+        private ChunkRange(ChunkScan[] chunks, int from, int to, boolean countingLines)
+        {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.countingLines = countingLines;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkRange(chunks, from, mid, countingLines), new ChunkRange(chunks, mid, to, countingLines));
+            } else if (countingLines)
+                chunks[from].countLines();
+            else
+                chunks[from].scan();
+        }
+
+    }   /* end nested ChunkRange class */
+
+
+    /**
+     * Fork/join task that scans a range of files, splitting the range in half until it holds a single file.
+     * A large file is in turn split into chunks, whose tasks are stolen by idle workers like any other.
+     */
+    private static class FileRange extends RecursiveAction
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileScan[] scans;
+        private final int from, to;
+
+        /* Creates a task for the files from index from (inclusive) to index to (exclusive). */
+        private FileRange(FileScan[] scans, int from, int to)
+        {
+            this.scans = scans;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FileRange(scans, from, mid), new FileRange(scans, mid, to));
+            } else {
+                FileScan scan = scans[from];
+                if (Mode.COUNT == scan.mode)
+                    scan.count = count(scan.recognizer, scan.file);
+                else if (Mode.TALLY == scan.mode)
+                    scan.tally = tally(scan.recognizer, scan.file);
+                else
+                    scan.matches = find(scan.recognizer, scan.file, scan.filename);
+            }
+        }
+
+    }   /* end nested FileRange class */
+
+
+    /**
+     * Holds a single file to be scanned and, once it has been, its matches (or the number of them, in
+     * total or for each string).
+     */
+    private static class FileScan
+    {
+
+        private final Recognizer recognizer;
+        private final File file;
+        private final String filename;
+        private final Mode mode;
+        private Map<String, MiniREString> matches;
+        private long count;
+        private Map<String, Long> tally;
+
+        /* Creates a scan of the specified file. */
+        private FileScan(Recognizer recognizer, File file, String filename, Mode mode)
+        {
+            this.recognizer = recognizer;
+            this.file = file;
+            this.filename = filename;
+            this.mode = mode;
+        }
+
+    }   /* end nested FileScan class */
+
+}   /* end MatchFinder class */
@@ -0,0 +1,171 @@
+package com.williamdye.rex.ast;
+
+import com.williamdye.rex.automata.*;
+import com.williamdye.rex.parser.*;
+import com.williamdye.rex.tokens.*;
+
+import java.text.ParseException;
+import java.util.*;
+
+/**
+ * A bounded, least-recently-used cache of compiled regular expressions, keyed by the source text
+ * of the regular expression. Recognizers are immutable (or internally synchronized), so a single
+ * compiled recognizer can be shared by every statement that uses the same regular expression.
+ * Invalid regular expressions are remembered as well (in a cache of the same capacity), so that each
+ * one is only parsed once.
+ * @author William Dye
+ */
+public class RecognizerCache
+{
+
+    /** The default maximum number of compiled regular expressions to keep. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final RecognizerCache shared = new RecognizerCache(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final Map<String, Recognizer> cache;
+    private final Map<String, ParseException> invalid;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a <code>RecognizerCache</code> that keeps at most <code>capacity</code> compiled regular expressions.
+     * @param maxSize the maximum number of entries in the cache
+     */
+    public RecognizerCache(int maxSize)
+    {
+        capacity = Math.max(maxSize, 1);
+        cache = new LinkedHashMap<String, Recognizer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Recognizer> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+        invalid = new LinkedHashMap<String, ParseException>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ParseException> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Accessor for the cache shared by every <code>ASTEvaluator</code> in the JVM.
+     * @return the shared cache
+     */
+    public static RecognizerCache getSharedCache()
+    {
+        return shared;
+    }
+
+    /**
+     * Returns the compiled recognizer for the specified regular expression, compiling it on a cache miss.
+     * A regular expression that is already known to be invalid counts as a hit, and is not parsed again.
+     * @param regex the source text of the regular expression
+     * @return the recognizer for the regular expression
+     * @throws ParseException if the regular expression is invalid
+     */
+    public Recognizer get(String regex) throws ParseException
+    {
+        synchronized (this) {
+            Recognizer recognizer = cache.get(regex);
+            if (recognizer != null) {
+                hits++;
+                return recognizer;
+            }
+            ParseException failure = invalid.get(regex);
+            if (failure != null) {
+                hits++;
+                throw new ParseException(failure.getMessage(), failure.getErrorOffset());
+            }
+            misses++;
+        }
+        /* compile without holding the lock, so other threads can use the cache meanwhile */
+        Recognizer compiled;
+        try {
+            compiled = compile(regex);
+        } catch (ParseException except) {
+            synchronized (this) {
+                invalid.put(regex, except);
+            }
+            throw except;
+        }
+        synchronized (this) {
+            Recognizer existing = cache.get(regex);
+            if (existing != null)
+                return existing;
+            cache.put(regex, compiled);
+            return compiled;
+        }
+    }
+
+    /**
+     * Returns true if the specified regular expression is valid, compiling it on a cache miss.
+     * @param regex the source text of the regular expression
+     * @return <code>true</code> if the regular expression is valid, <code>false</code> otherwise
+     */
+    public boolean isValid(String regex)
+    {
+        try {
+            get(regex);
+            return true;
+        } catch (ParseException except) {
+            return false;
+        }
+    }
+
+    /**
+     * Accessor for the number of lookups that found a compiled (or invalid) regular expression in the cache.
+     * @return the number of cache hits
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Accessor for the number of lookups that had to compile a regular expression.
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Accessor for the number of compiled regular expressions currently in the cache.
+     * @return the size of the cache
+     */
+    public synchronized int size()
+    {
+        return cache.size();
+    }
+
+    /**
+     * Removes every entry from the cache and resets the hit and miss counters.
+     */
+    public synchronized void clear()
+    {
+        cache.clear();
+        invalid.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /* Parses the regular expression and chooses a matching engine for it: small patterns are simulated
+     * bit-parallel with no DFA at all, and larger ones build DFA states only as the walker reaches them. */
+    private static Recognizer compile(String regex) throws ParseException
+    {
+        RecursiveDescentParser parser = new RecursiveDescentParserImpl(new TokenizerImpl(regex), new LinkedHashSet<NFA>());
+        IndexedNFA indexed = new IndexedNFA(parser.parse());
+        if (BitParallelNFA.getNumPositions(indexed) <= BitParallelNFA.MAX_POSITIONS)
+            return new BitParallelNFA(indexed);
+        return new LazyDFA(indexed, LazyDFA.DEFAULT_MAX_STATES);
+    }
+
+}
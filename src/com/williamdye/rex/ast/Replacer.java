@@ -0,0 +1,236 @@
+package com.williamdye.rex.ast;
+
+import com.williamdye.rex.automata.*;
+import com.williamdye.rex.scanner.*;
+import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Contains class methods to replace the matches of a regex in a file. The source file is mapped into
+ * memory and read in a single forward pass: the bytes between matches are copied from the mapping to
+ * the destination unchanged (line separators included), so only a line being replaced recursively is
+ * ever held in memory as a string.
+ * @author William Dye
+ */
+public class Replacer
+{
+
+    /** The size (in bytes) of the buffer used to write the destination file. */
+    public static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /** The length (in characters) beyond which a line being replaced recursively is taken to grow without bound. */
+    public static final int MAX_LINE_LENGTH = 1 << 24;
+
+    /* Bytes are read as one character each, as by ByteBufferInput, so that match indexes line up. */
+    private static final String CHARSET = "ISO-8859-1";
+
+    private Replacer() { /* prevent instantiation */ }
+
+    /**
+     * Replaces every match of the recognizer in the source file with the replacement string, and writes
+     * the result to the destination file. Everything but the matches (line separators included) is
+     * copied unchanged. The destination may be the source file itself, in which case the result is written to a temporary file
+     * that then replaces the source.
+     * @param recognizer the recognizer for the regex to replace
+     * @param source the file to read
+     * @param dest the file to write
+     * @param replacement the string that replaces each match
+     * @return the number of matches replaced
+     * @throws IOException if either file cannot be read or written
+     */
+    public static int replace(Recognizer recognizer, File source, File dest, String replacement) throws IOException
+    {
+        return replace(recognizer, source, dest, replacement, false, 1);
+    }
+
+    /**
+     * Replaces the matches of the recognizer in the source file until none are left, and writes the
+     * result to the destination file, which may be the source file itself. Matches never span lines, so
+     * each line is replaced until it has no matches independently of the others: after the first pass
+     * over the file, only the lines changed by the previous round are scanned again. The destination is
+     * only written if every line reaches a fixed point.
+     * @param recognizer the recognizer for the regex to replace
+     * @param source the file to read
+     * @param dest the file to write
+     * @param replacement the string that replaces each match
+     * @param maxIterations the maximum number of rounds of replacement on any line
+     * @return the number of matches replaced
+     * @throws IOException if either file cannot be read or written
+     * @throws IllegalStateException if a line still has matches after <code>maxIterations</code> rounds, or
+     *         is found earlier never to run out of matches (because it repeats or grows beyond
+     *         <code>MAX_LINE_LENGTH</code>)
+     */
+    public static int replaceRecursively(Recognizer recognizer, File source, File dest, String replacement,
+                                         int maxIterations) throws IOException
+    {
+        return replace(recognizer, source, dest, replacement, true, maxIterations);
+    }
+
+    /* Helper for the replace methods. The result is written to a temporary file first if the replacement
+     * is in place, or if it is recursive and so may fail once part of the file has been written. */
+    private static int replace(Recognizer recognizer, File source, File dest, String replacement, boolean recursive,
+                               int maxIterations) throws IOException
+    {
+        if (!recursive && (!dest.exists() || !source.getCanonicalFile().equals(dest.getCanonicalFile())))
+            return rewrite(recognizer, source, dest, new LineReplacer(recognizer, replacement, recursive, maxIterations));
+
+        File temp = File.createTempFile("rex", ".tmp", dest.getAbsoluteFile().getParentFile());
+        boolean moved = false;
+        try {
+            int count = rewrite(recognizer, source, temp, new LineReplacer(recognizer, replacement, recursive, maxIterations));
+            Files.move(temp.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+            return count;
+        } finally {
+            if (!moved)
+                temp.delete();
+        }
+    }
+
+    /* Copies the source to the target, replacing the matches found by a walker over the source as they are reached. */
+    private static int rewrite(Recognizer recognizer, File source, File target, LineReplacer lines) throws IOException
+    {
+        try (MappedCharBuffer input = new MappedCharBuffer(source, false);
+             FileOutputStream stream = new FileOutputStream(target)) {
+            OutputBuffer out = new OutputBuffer(stream.getChannel(), OUTPUT_BUFFER_SIZE);
+            MiniRETableWalkerImpl walker = new MiniRETableWalkerImpl(recognizer, input);
+            while (walker.hasNextToken()) {
+                SourceToken token = walker.getNextToken();
+                if (!MiniRETableWalkerImpl.MATCH_TOKEN.equals(token.getTokenType()))
+                    continue;
+                int length = token.getTokenString().length();
+                lines.match(input, out, walker.getBufferLineNumber(), walker.getBufferIndex() - length, length);
+            }
+            lines.finish(input, out);
+            out.flush();
+            return lines.count;
+        }
+    }
+
+
+    /**
+     * Copies the source to the destination around the matches on its lines, writing the replacement in
+     * place of each match. In a recursive replacement, each line that had matches is held until its last
+     * match has been replaced, and is then replaced again until it has none.
+     */
+    private static class LineReplacer
+    {
+
+        private final Recognizer recognizer;
+        private final String replacement;
+        private final byte[] replacementBytes;
+        private final boolean recursive;
+        private final int maxIterations;
+        private final StringBuilder replaced;
+        private long copied, lineStart, lineEnd;
+        private int lineNumber, count;
+
+        /* Creates a LineReplacer that replaces matches of the recognizer with the replacement string. */
+        private LineReplacer(Recognizer recognizer, String replacement, boolean recursive, int maxIterations)
+                throws UnsupportedEncodingException
+        {
+            this.recognizer = recognizer;
+            this.replacement = replacement;
+            replacementBytes = replacement.getBytes(CHARSET);
+            this.recursive = recursive;
+            this.maxIterations = maxIterations;
+            replaced = new StringBuilder();
+            copied = 0;
+            lineStart = -1;
+            count = 0;
+        }
+
+        /* Replaces the match of the specified length at the specified index of the current line of the input. */
+        private void match(ByteBufferInput input, OutputBuffer out, int matchLine, int index, int length)
+                throws IOException
+        {
+            long start = input.getLineStart() + index;
+            count++;
+            if (!recursive) {
+                input.copy(copied, start, out);
+                out.write(replacementBytes, 0, replacementBytes.length);
+                copied = start + length;
+                return;
+            }
+            if (lineStart >= 0 && lineStart != input.getLineStart())
+                finishLine(input, out);
+            if (lineStart < 0) {
+                input.copy(copied, input.getLineStart(), out);
+                lineStart = copied = input.getLineStart();
+                lineEnd = input.getLineEnd();
+                lineNumber = matchLine;
+                replaced.setLength(0);
+            }
+            replaced.append(input.getText(copied, start)).append(replacement);
+            copied = start + length;
+        }
+
+        /* Writes whatever is left of the input once the last match has been replaced. */
+        private void finish(ByteBufferInput input, OutputBuffer out) throws IOException
+        {
+            if (lineStart >= 0)
+                finishLine(input, out);
+            input.copy(copied, input.getSize(), out);
+        }
+
+        /* Writes the line held since its first match, once it has no matches left, without its separator. */
+        private void finishLine(ByteBufferInput input, OutputBuffer out) throws IOException
+        {
+            replaced.append(input.getText(copied, lineEnd));
+            byte[] line = fixedPoint(input.getText(lineStart, lineEnd), replaced.toString()).getBytes(CHARSET);
+            out.write(line, 0, line.length);
+            copied = lineEnd;
+            lineStart = -1;
+        }
+        /* Replaces the matches of a line (the result of the first round on the original line) until there
+         * are none left, and returns the final line. */
+        private String fixedPoint(String original, String current) throws IOException
+        {
+            Set<String> seen = new HashSet<String>();
+            seen.add(original);
+            for (int iteration = 1; ; iteration++) {
+                StringBuilder next = new StringBuilder();
+                int matches = replaceAll(current, next);
+                if (0 == matches)
+                    return current;
+                if (iteration >= maxIterations)
+                    throw new IllegalStateException("Line " + lineNumber + " still has matches after " + maxIterations
+                            + " iterations");
+                if (!seen.add(current))
+                    throw new IllegalStateException("Line " + lineNumber + " repeats itself after " + iteration
+                            + " iterations, so its matches are never all replaced");
+                if (next.length() > MAX_LINE_LENGTH)
+                    throw new IllegalStateException("Line " + lineNumber + " grows beyond " + MAX_LINE_LENGTH
+                            + " characters after " + (iteration + 1) + " iterations");
+                count += matches;
+                current = next.toString();
+            }
+        }
+
+        /* Appends the text with every match replaced to the builder, and returns the number of matches. */
+        private int replaceAll(String text, StringBuilder result) throws IOException
+        {
+            MiniRETableWalkerImpl walker = new MiniRETableWalkerImpl(recognizer,
+                    new ByteBufferInput(ByteBuffer.wrap(text.getBytes(CHARSET))));
+            int copiedText = 0, matches = 0;
+            while (walker.hasNextToken()) {
+                SourceToken token = walker.getNextToken();
+                if (!MiniRETableWalkerImpl.MATCH_TOKEN.equals(token.getTokenType()))
+                    continue;
+                int length = token.getTokenString().length(), index = walker.getBufferIndex() - length;
+                result.append(text, copiedText, index).append(replacement);
+                copiedText = index + length;
+                matches++;
+            }
+            result.append(text, copiedText, text.length());
+            return matches;
+        }
+
+    }   /* end nested LineReplacer class */
+
+}   /* end Replacer class */
@@ -0,0 +1,179 @@
+package com.williamdye.rex.automata;
+
+import java.util.*;
+
+/**
+ * Partitions the alphabet of an automaton into equivalence classes. Two characters belong to
+ * the same class if every state of the automaton transitions to the same place on both of them,
+ * so an algorithm that works one character class at a time can consider a single representative
+ * character from each class instead of every character in the alphabet.
+ * @author William Dye
+ */
+public class AlphabetPartition
+{
+
+    private int[] classes;
+    private char[][] members;
+
+    /**
+     * Computes the equivalence classes of the alphabet of the specified <code>nfa</code>.
+     * Epsilon transitions are ignored.
+     * @param nfa the NFA whose alphabet is to be partitioned
+     */
+    public AlphabetPartition(NFA nfa)
+    {
+        this(nfa.getStates(), false);
+    }
+
+    /**
+     * Computes the equivalence classes of the alphabet of the specified <code>dfa</code>.
+     * @param dfa the DFA whose alphabet is to be partitioned
+     */
+    public AlphabetPartition(DFA dfa)
+    {
+        this(dfa.getStates(), true);
+    }
+
+    /* Refines a single class containing the whole alphabet by the transitions of every state. */
+    AlphabetPartition(Collection<State> states, boolean deterministic)
+    {
+        char max = 0;
+        for (State state : states) {
+            for (char c : state.getTransitionChars()) {
+                if (c != NFAImpl.EPSILON && c > max)
+                    max = c;
+            }
+        }
+        classes = new int[max + 1];
+        Arrays.fill(classes, -1);
+        for (State state : states) {
+            for (char c : state.getTransitionChars()) {
+                if (c != NFAImpl.EPSILON)
+                    classes[c] = 0;
+            }
+        }
+
+        int numClasses = 0;
+        int[] sizes = new int[classes.length + 1];
+        for (int c = 0; c < classes.length; c++) {
+            if (classes[c] == 0)
+                sizes[0]++;
+        }
+        if (sizes[0] > 0)
+            numClasses = 1;
+
+        int[] counts = new int[classes.length + 1];
+        int[] splits = new int[classes.length + 1];
+        int[] touched = new int[classes.length + 1];
+        for (State state : states) {
+            for (List<Character> group : groupByTarget(state, deterministic)) {
+                /* split every class that has members both inside and outside of the group */
+                int numTouched = 0;
+                for (char c : group) {
+                    if (counts[classes[c]]++ == 0)
+                        touched[numTouched++] = classes[c];
+                }
+                for (int i = 0; i < numTouched; i++) {
+                    if (counts[touched[i]] < sizes[touched[i]])
+                        splits[touched[i]] = numClasses++;
+                }
+                for (char c : group) {
+                    int old = classes[c];
+                    if (splits[old] != 0) {
+                        classes[c] = splits[old];
+                        sizes[old]--;
+                        sizes[splits[old]]++;
+                    }
+                }
+                for (int i = 0; i < numTouched; i++) {
+                    counts[touched[i]] = 0;
+                    splits[touched[i]] = 0;
+                }
+            }
+        }
+        renumber(numClasses);
+    }
+
+    /* Groups the characters on which the state transitions by the destination of the transition. */
+    private static Collection<List<Character>> groupByTarget(State state, boolean deterministic)
+    {
+        Map<Object, List<Character>> groups = new LinkedHashMap<Object, List<Character>>();
+        for (char c : state.getTransitionChars()) {
+            if (c == NFAImpl.EPSILON || !state.hasTransition(c))
+                continue;
+            Object target = (deterministic ? state.getNextState(c) : state.getNextStates(c));
+            List<Character> group = groups.get(target);
+            if (group == null) {
+                group = new ArrayList<Character>();
+                groups.put(target, group);
+            }
+            group.add(c);
+        }
+        return groups.values();
+    }
+
+    /* Renumbers the classes in order of their smallest member and records the members of each class. */
+    private void renumber(int numClasses)
+    {
+        int[] ids = new int[numClasses];
+        int[] sizes = new int[numClasses];
+        Arrays.fill(ids, -1);
+        int next = 0;
+        for (int c = 0; c < classes.length; c++) {
+            if (classes[c] >= 0) {
+                if (ids[classes[c]] < 0)
+                    ids[classes[c]] = next++;
+                classes[c] = ids[classes[c]];
+                sizes[classes[c]]++;
+            }
+        }
+        members = new char[numClasses][];
+        for (int i = 0; i < numClasses; i++)
+            members[i] = new char[sizes[i]];
+        Arrays.fill(sizes, 0);
+        for (int c = 0; c < classes.length; c++) {
+            if (classes[c] >= 0)
+                members[classes[c]][sizes[classes[c]]++] = (char)c;
+        }
+    }
+
+    /**
+     * Accessor for the number of equivalence classes in the partition.
+     * @return the number of character classes
+     */
+    public int getNumClasses()
+    {
+        return members.length;
+    }
+
+    /**
+     * Returns the id of the class to which the character <code>c</code> belongs.
+     * @param c the character to look up
+     * @return the class id for <code>c</code>, or <code>-1</code> if <code>c</code> is not in the alphabet
+     */
+    public int getClassId(char c)
+    {
+        return (c < classes.length ? classes[c] : -1);
+    }
+
+    /**
+     * Returns a single character that belongs to the class with the specified id.
+     * @param classId the id of the class
+     * @return the smallest character in the class
+     */
+    public char getRepresentative(int classId)
+    {
+        return members[classId][0];
+    }
+
+    /**
+     * Returns all characters that belong to the class with the specified id, in ascending order.
+     * @param classId the id of the class
+     * @return the characters in the class
+     */
+    public char[] getMembers(int classId)
+    {
+        return members[classId];
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.williamdye.rex.automata;
+
+import java.util.*;
+
+/**
+ * Simulates a small NFA directly, without constructing a DFA, by packing the set of active
+ * states into a single <code>long</code>. Only the NFA's positions (states with a transition on a
+ * character, plus accepting states) are represented; epsilon closures are folded into the
+ * precomputed follow sets. Each step looks up the follow sets of up to eight active positions at a
+ * time in tables indexed by those positions' bits, so the cost of a step is independent of how many
+ * positions are active. Character classes with the same follow sets share their tables, and the
+ * positions are looked up a few at a time instead if the tables would otherwise hold more than
+ * <code>MAX_TABLE_ENTRIES</code> entries, so the memory used by any pattern is bounded.
+ * @author William Dye
+ */
+public class BitParallelNFA implements Recognizer
+{
+
+    /** The maximum number of positions that a <code>BitParallelNFA</code> can simulate. */
+    public static final int MAX_POSITIONS = 64;
+
+    /** The number of entries (of eight bytes each) in the follow tables, beyond which fewer positions are looked up at once. */
+    public static final int MAX_TABLE_ENTRIES = 1 << 13;
+
+    private final AlphabetPartition partition;
+    private final long start;
+    private final long accepting;
+    private final int width;
+    private final int numChunks;
+    private final int[] rows;
+    private final long[][][] follow;
+
+    /**
+     * Creates a <code>BitParallelNFA</code> for the specified indexed NFA, using the NFA's own accepting states.
+     * @param nfa the indexed NFA to simulate
+     * @throws IllegalArgumentException if the NFA has more than <code>MAX_POSITIONS</code> positions
+     */
+    public BitParallelNFA(IndexedNFA nfa)
+    {
+        final int n = nfa.getNumStates(), k = nfa.getPartition().getNumClasses();
+        partition = nfa.getPartition();
+
+        /* number the positions */
+        int[] positions = new int[n];
+        int numPositions = 0;
+        for (int s = 0; s < n; s++)
+            positions[s] = (isPosition(nfa, s) ? numPositions++ : -1);
+        if (numPositions > MAX_POSITIONS)
+            throw new IllegalArgumentException("NFA has " + numPositions + " positions; at most " + MAX_POSITIONS + " are allowed");
+
+        /* project every epsilon closure onto the positions */
+        long[] closures = new long[n];
+        long acceptingMask = 0;
+        for (int s = 0; s < n; s++) {
+            BitSet closure = nfa.getClosure(s);
+            for (int t = closure.nextSetBit(0); t >= 0; t = closure.nextSetBit(t + 1)) {
+                if (positions[t] >= 0)
+                    closures[s] |= 1L << positions[t];
+            }
+            if (positions[s] >= 0 && nfa.getAcceptingStates().get(s))
+                acceptingMask |= 1L << positions[s];
+        }
+        start = closures[0];
+        accepting = acceptingMask;
+
+        /* find the follow set of each position on each character class; classes with the same ones share a row */
+        rows = new int[k];
+        List<long[]> distinct = new ArrayList<long[]>();
+        for (int c = 0; c < k; c++) {
+            long[] single = new long[Math.max(numPositions, 1)];
+            for (int s = 0; s < n; s++) {
+                if (positions[s] < 0)
+                    continue;
+                for (int t : nfa.getTargets(s, c))
+                    single[positions[s]] |= closures[t];
+            }
+            rows[c] = distinct.size();
+            for (int row = 0; row < distinct.size(); row++) {
+                if (Arrays.equals(distinct.get(row), single)) {
+                    rows[c] = row;
+                    break;
+                }
+            }
+            if (rows[c] == distinct.size())
+                distinct.add(single);
+        }
+
+        /* tabulate the follow set of every combination of width positions for every row, for the widest width
+         * that fits (narrower than two positions would only make the tables longer) */
+        int w = 8;
+        while (w > 2 && (long)distinct.size() * ((numPositions + w - 1) / w) * (1 << w) > MAX_TABLE_ENTRIES)
+            w /= 2;
+        width = w;
+        numChunks = (numPositions + width - 1) / width;
+        follow = new long[distinct.size()][numChunks][1 << width];
+        for (int row = 0; row < distinct.size(); row++) {
+            long[] single = distinct.get(row);
+            for (int chunk = 0; chunk < numChunks; chunk++) {
+                long[] table = follow[row][chunk];
+                for (int bits = 1; bits < table.length; bits++) {
+                    int low = chunk * width + Integer.numberOfTrailingZeros(bits);
+                    table[bits] = table[bits & (bits - 1)] | (low < numPositions ? single[low] : 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accessor for the total number of entries in the follow tables of a <code>BitParallelNFA</code>.
+     * @return the size of the tables, in entries of eight bytes each
+     */
+    public int getTableSize()
+    {
+        return follow.length * numChunks * (1 << width);
+    }
+
+    /**
+     * Returns the number of positions that a <code>BitParallelNFA</code> would need to simulate the specified NFA.
+     * @param nfa the indexed NFA
+     * @return the number of positions in the NFA
+     */
+    public static int getNumPositions(IndexedNFA nfa)
+    {
+        int count = 0;
+        for (int s = 0; s < nfa.getNumStates(); s++) {
+            if (isPosition(nfa, s))
+                count++;
+        }
+        return count;
+    }
+
+    /* Returns true if the state has a transition on any character or is accepting. */
+    private static boolean isPosition(IndexedNFA nfa, int state)
+    {
+        if (nfa.getAcceptingStates().get(state))
+            return true;
+        for (int c = 0; c < nfa.getPartition().getNumClasses(); c++) {
+            if (nfa.getTargets(state, c).length > 0)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Cursor newCursor()
+    {
+        return new BitParallelCursor();
+    }
+
+
+    /**
+     * Cursor implementation that holds the set of active positions in a <code>long</code>.
+     */
+    protected class BitParallelCursor implements Cursor
+    {
+
+        private long active;
+
+        /**
+         * Creates a new <code>BitParallelCursor</code> positioned at the start state.
+         */
+        public BitParallelCursor()
+        {
+            active = start;
+        }
+
+        @Override
+        public void reset()
+        {
+            active = start;
+        }
+
+        @Override
+        public boolean advance(char c)
+        {
+            int classId = partition.getClassId(c);
+            if (classId < 0)
+                return false;
+            long[][] tables = follow[rows[classId]];
+            long next = 0;
+            int mask = (1 << width) - 1;
+            for (int chunk = 0; chunk < numChunks; chunk++)
+                next |= tables[chunk][(int)(active >>> (chunk * width)) & mask];
+            if (next == 0)
+                return false;
+            active = next;
+            return true;
+        }
+
+        @Override
+        public boolean isAccepting()
+        {
+            return (active & accepting) != 0;
+        }
+
+    }   /* end nested BitParallelCursor class */
+
+}   /* end BitParallelNFA class */
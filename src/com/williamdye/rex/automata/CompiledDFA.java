@@ -0,0 +1,72 @@
+package com.williamdye.rex.automata;
+
+import java.util.List;
+
+/**
+ * Represents an immutable, table-driven form of a deterministic finite-state automaton.
+ * States are numbered from <code>0</code> to <code>getNumStates() - 1</code>, and characters
+ * are mapped to class ids before being looked up in the transition table.
+ * @author William Dye
+ */
+public interface CompiledDFA extends Recognizer
+{
+
+    /** The state returned by <code>transition()</code> when no transition exists. */
+    public static final int DEAD_STATE = -1;
+
+    /**
+     * Accessor for the number of states in a compiled DFA.
+     * @return the number of states in the compiled DFA
+     */
+    public int getNumStates();
+
+    /**
+     * Accessor for the number of the starting (initial) state of a compiled DFA.
+     * @return the number of the initial state
+     */
+    public int getStartState();
+
+    /**
+     * Accessor for the number of character classes (columns) in a compiled DFA's transition table.
+     * @return the size of the compiled DFA's alphabet
+     */
+    public int getAlphabetSize();
+
+    /**
+     * Returns the id of the character class to which the character <code>c</code> belongs.
+     * @param c the character to look up
+     * @return the class id for <code>c</code>, or <code>-1</code> if the DFA has no transitions on <code>c</code>
+     */
+    public int getClassId(char c);
+
+    /**
+     * A compiled DFA's transition function. Given a state <code>from</code>
+     * and a character <code>c</code>, returns the state to which
+     * the DFA moves when starting in <code>from</code> and reading a <code>c</code>.
+     * @param from the number of the state from which to transition
+     * @param c the character on which to transition
+     * @return the number of the state to which the DFA transitions, or <code>DEAD_STATE</code>
+     */
+    public int transition(int from, char c);
+
+    /**
+     * Returns <code>true</code> if the state numbered <code>state</code> is an accepting (final) state.
+     * @param state the number of the state to test
+     * @return <code>true</code> if the state is accepting, <code>false</code> otherwise
+     */
+    public boolean isAccepting(int state);
+
+    /**
+     * Returns the id of the highest-priority token class accepted by the state numbered <code>state</code>.
+     * @param state the number of the state to look up
+     * @return the token id accepted by the state, or <code>DFA.NO_TOKEN</code>
+     */
+    public int getAcceptingTokenId(int state);
+
+    /**
+     * Accessor for the token classes recognized by a compiled DFA, indexed by token id.
+     * @return the list of token classes
+     */
+    public List<String> getTokenClasses();
+
+}
@@ -0,0 +1,159 @@
+package com.williamdye.rex.automata;
+
+import java.util.*;
+
+/**
+ * Implementation of the CompiledDFA interface.
+ * Stores the transitions of a DFA in a single flat array indexed by
+ * <code>state * alphabetSize + classId</code>, where characters on which every
+ * state behaves identically share a single class id (and thus a single column).
+ * @author William Dye
+ */
+public class CompiledDFAImpl implements CompiledDFA
+{
+
+    private final int start;
+    private final int alphabetSize;
+    private final int[] classes;
+    private final int[] next;
+    private final boolean[] accepting;
+    private final int[] tokenIds;
+    private final List<String> tokenClasses;
+
+    /**
+     * Compiles the specified <code>dfa</code> into a <code>CompiledDFAImpl</code>.
+     * States are numbered in the order in which <code>dfa.getStates()</code> returns them.
+     * @param dfa the DFA to compile
+     */
+    public CompiledDFAImpl(DFA dfa)
+    {
+        State[] states = dfa.getStates().toArray(new State[dfa.getStates().size()]);
+        Map<State, Integer> numbers = new HashMap<State, Integer>();
+        for (int i = 0; i < states.length; i++)
+            numbers.put(states[i], i);
+
+        AlphabetPartition partition = new AlphabetPartition(dfa);
+        alphabetSize = partition.getNumClasses();
+        char[] chars = new char[alphabetSize];
+        char max = 0;
+        for (int i = 0; i < alphabetSize; i++) {
+            chars[i] = partition.getRepresentative(i);
+            char[] members = partition.getMembers(i);
+            if (members[members.length - 1] > max)
+                max = members[members.length - 1];
+        }
+        classes = new int[max + 1];
+        for (int c = 0; c <= max; c++)
+            classes[c] = partition.getClassId((char)c);
+
+        next = new int[states.length * alphabetSize];
+        accepting = new boolean[states.length];
+        tokenIds = dfa.getAcceptingTokenIds();
+        tokenClasses = Collections.unmodifiableList(new ArrayList<String>(dfa.getTokenClasses()));
+        for (int i = 0; i < states.length; i++) {
+            accepting[i] = states[i].isAccepting();
+            for (int j = 0; j < alphabetSize; j++) {
+                State to = (states[i].hasTransition(chars[j]) ? states[i].getNextState(chars[j]) : null);
+                next[i * alphabetSize + j] = (to == null ? DEAD_STATE : numbers.get(to));
+            }
+        }
+        start = numbers.get(dfa.getStartState());
+    }
+
+    @Override
+    public int getNumStates()
+    {
+        return accepting.length;
+    }
+
+    @Override
+    public int getStartState()
+    {
+        return start;
+    }
+
+    @Override
+    public int getAlphabetSize()
+    {
+        return alphabetSize;
+    }
+
+    @Override
+    public int getClassId(char c)
+    {
+        return (c < classes.length ? classes[c] : -1);
+    }
+
+    @Override
+    public int transition(int from, char c)
+    {
+        int id = (c < classes.length ? classes[c] : -1);
+        return (id < 0 ? DEAD_STATE : next[from * alphabetSize + id]);
+    }
+
+    @Override
+    public boolean isAccepting(int state)
+    {
+        return accepting[state];
+    }
+
+    @Override
+    public int getAcceptingTokenId(int state)
+    {
+        return tokenIds[state];
+    }
+
+    @Override
+    public List<String> getTokenClasses()
+    {
+        return tokenClasses;
+    }
+
+    @Override
+    public Cursor newCursor()
+    {
+        return new TableCursor();
+    }
+
+
+    /**
+     * Cursor implementation that steps through the transition table.
+     */
+    protected class TableCursor implements Cursor
+    {
+
+        private int state;
+
+        /**
+         * Creates a new <code>TableCursor</code> positioned at the start state.
+         */
+        public TableCursor()
+        {
+            state = start;
+        }
+
+        @Override
+        public void reset()
+        {
+            state = start;
+        }
+
+        @Override
+        public boolean advance(char c)
+        {
+            int next = transition(state, c);
+            if (next == DEAD_STATE)
+                return false;
+            state = next;
+            return true;
+        }
+
+        @Override
+        public boolean isAccepting()
+        {
+            return accepting[state];
+        }
+
+    }   /* end nested TableCursor class */
+
+}   /* end CompiledDFAImpl class */
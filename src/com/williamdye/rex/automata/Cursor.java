@@ -0,0 +1,30 @@
+package com.williamdye.rex.automata;
+
+/**
+ * Represents the current position of a single scan through a recognizer.
+ * Cursors are not thread-safe.
+ * @author William Dye
+ */
+public interface Cursor
+{
+
+    /**
+     * Moves a cursor back to the start state of its recognizer.
+     */
+    public void reset();
+
+    /**
+     * Transitions on the character <code>c</code>, if possible. If there is no transition
+     * on <code>c</code>, the cursor remains in its current state.
+     * @param c the character on which to transition
+     * @return <code>true</code> if the cursor transitioned, <code>false</code> otherwise
+     */
+    public boolean advance(char c);
+
+    /**
+     * Returns <code>true</code> if a cursor is currently in an accepting (final) state.
+     * @return <code>true</code> if the current state is accepting, <code>false</code> otherwise
+     */
+    public boolean isAccepting();
+
+}
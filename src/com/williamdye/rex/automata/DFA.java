@@ -1,5 +1,7 @@
 package com.williamdye.rex.automata;
 
+import java.util.*;
+
 /**
  * Represents a deterministic finite-state automaton.
  * @author TJ Harrison
@@ -7,6 +9,9 @@ package com.williamdye.rex.automata;
 public interface DFA extends FiniteStateAutomaton
 {
 
+    /** The token id of a state that does not accept any token class. */
+    public static final int NO_TOKEN = -1;
+
 	/**
      * A DFA's transition function. Given a state <code>from</code>
      * and a character <code>c</code>, returns the state to which
@@ -18,4 +23,44 @@ public interface DFA extends FiniteStateAutomaton
     @SuppressWarnings("unused")
     public State transition(char c, State from);
 
+    /**
+     * Accessor for the list of all states in a DFA.
+     * @return the list of states in the DFA
+     */
+    public Set<State> getStates();
+
+    /**
+     * Accessor for the token classes recognized by a DFA, in priority order.
+     * The position of a token class in this list is its token id.
+     * @return the list of token classes, which is empty if none have been assigned
+     */
+    public List<String> getTokenClasses();
+
+    /**
+     * Mutator for the token classes recognized by a DFA.
+     * @param tokenClasses the list of token classes, in priority order
+     */
+    public void setTokenClasses(List<String> tokenClasses);
+
+    /**
+     * Returns the id of the highest-priority token class accepted by the specified state.
+     * @param state the state to look up
+     * @return the token id accepted by the state, or <code>NO_TOKEN</code>
+     */
+    public int getAcceptingTokenId(State state);
+
+    /**
+     * Mutator for the id of the highest-priority token class accepted by the specified state.
+     * @param state the state to update
+     * @param tokenId the token id accepted by the state, or <code>NO_TOKEN</code>
+     */
+    public void setAcceptingTokenId(State state, int tokenId);
+
+    /**
+     * Returns the token id accepted by every state in a DFA, in the order in which
+     * <code>getStates()</code> returns the states.
+     * @return an array of token ids, with <code>NO_TOKEN</code> for states that accept no token class
+     */
+    public int[] getAcceptingTokenIds();
+
 }
@@ -14,6 +14,7 @@ public class DFAImpl extends FiniteStateAutomatonImpl implements DFA
 
 	private State start;
     private Set<State> states;
+    private List<String> tokenClasses;
 
     /**
      * Creates a <code>DFAImpl</code> with no identifier.
@@ -45,6 +46,7 @@ public class DFAImpl extends FiniteStateAutomatonImpl implements DFA
         start = new DFAState();
         states = new LinkedHashSet<State>();
         states.add(start);
+        tokenClasses = new ArrayList<String>();
 	}
 
 	@Override
@@ -67,6 +69,46 @@ public class DFAImpl extends FiniteStateAutomatonImpl implements DFA
         return accepting;
 	}
 
+    @Override
+    public Set<State> getStates()
+    {
+        return states;
+    }
+
+    @Override
+    public List<String> getTokenClasses()
+    {
+        return tokenClasses;
+    }
+
+    @Override
+    public void setTokenClasses(List<String> classes)
+    {
+        tokenClasses = new ArrayList<String>(classes);
+    }
+
+    @Override
+    public int getAcceptingTokenId(State state)
+    {
+        return ((DFAState)state).tokenId;
+    }
+
+    @Override
+    public void setAcceptingTokenId(State state, int tokenId)
+    {
+        ((DFAState)state).tokenId = tokenId;
+    }
+
+    @Override
+    public int[] getAcceptingTokenIds()
+    {
+        int[] ids = new int[states.size()];
+        int i = 0;
+        for (State state : states)
+            ids[i++] = ((DFAState)state).tokenId;
+        return ids;
+    }
+
     @Override
     public Set<Character> getAlphabet()
     {
@@ -104,6 +146,7 @@ public class DFAImpl extends FiniteStateAutomatonImpl implements DFA
     {
 		
 		private boolean accepting;
+        private int tokenId;
         private LinkedHashMap<Character, State> transitions;
 
         /**
@@ -112,6 +155,7 @@ public class DFAImpl extends FiniteStateAutomatonImpl implements DFA
 		public DFAState()
 		{
 			accepting = false;
+            tokenId = NO_TOKEN;
 			transitions = new LinkedHashMap<Character, State>();
 		}
 
@@ -0,0 +1,194 @@
+package com.williamdye.rex.automata;
+
+import java.util.*;
+
+/**
+ * Contains a class method to minimize a DFA using Hopcroft's partition-refinement algorithm.
+ * @author William Dye
+ */
+public class DFAMinimizer
+{
+
+    private DFAMinimizer() { /* prevent instantiation */ }
+
+    /**
+     * Returns a DFA with the fewest states that behaves identically to the specified <code>dfa</code>.
+     * States are only merged if they belong to exactly the same token classes, so the mapping
+     * of <code>identifiers</code> is preserved; it is updated to correspond to the minimized DFA.
+     * Missing transitions are treated as transitions to a dead state that is never merged with a
+     * real state, so a table walker stops on exactly the same characters with either DFA.
+     * @param dfa the DFA to minimize
+     * @param identifiers a mapping from identifiers (token classes) to sets of states
+     * @return the minimized DFA
+     */
+    public static DFA minimize(DFA dfa, Map<String, Set<State>> identifiers)
+    {
+        State[] states = dfa.getStates().toArray(new State[dfa.getStates().size()]);
+        Map<State, Integer> numbers = new HashMap<State, Integer>();
+        for (int i = 0; i < states.length; i++)
+            numbers.put(states[i], i);
+        final int n = states.length;    /* state n is the implicit dead state */
+        AlphabetPartition partition = new AlphabetPartition(dfa);
+        final int k = partition.getNumClasses();
+
+        /* build the inverse transition function, grouped by class and then by target */
+        int[] delta = new int[(n + 1) * k];
+        int[] inverseStart = new int[(n + 1) * k + 1];
+        for (int s = 0; s <= n; s++) {
+            for (int c = 0; c < k; c++) {
+                char ch = partition.getRepresentative(c);
+                int t = n;
+                if (s < n && states[s].hasTransition(ch))
+                    t = numbers.get(states[s].getNextState(ch));
+                delta[s * k + c] = t;
+                inverseStart[c * (n + 1) + t + 1]++;
+            }
+        }
+        for (int i = 1; i < inverseStart.length; i++)
+            inverseStart[i] += inverseStart[i - 1];
+        int[] inverse = new int[(n + 1) * k];
+        int[] fill = Arrays.copyOf(inverseStart, inverseStart.length - 1);
+        for (int s = 0; s <= n; s++) {
+            for (int c = 0; c < k; c++)
+                inverse[fill[c * (n + 1) + delta[s * k + c]]++] = s;
+        }
+
+        /* initial partition: the dead state, then one block per distinct accepting token id and set of token classes */
+        int[] block = new int[n + 1];
+        Map<List<Object>, Integer> signatures = new LinkedHashMap<List<Object>, Integer>();
+        List<List<Object>> keys = new ArrayList<List<Object>>();
+        for (int s = 0; s < n; s++)
+            keys.add(new ArrayList<Object>(Arrays.asList(states[s].isAccepting(), dfa.getAcceptingTokenId(states[s]))));
+        for (String id : identifiers.keySet()) {
+            for (State state : identifiers.get(id)) {
+                Integer s = numbers.get(state);
+                if (s != null)
+                    keys.get(s).add(id);
+            }
+        }
+        int numBlocks = 1;
+        block[n] = 0;
+        for (int s = 0; s < n; s++) {
+            Integer b = signatures.get(keys.get(s));
+            if (b == null) {
+                b = numBlocks++;
+                signatures.put(keys.get(s), b);
+            }
+            block[s] = b;
+        }
+
+        /* lay out the members of each block contiguously */
+        int[] elements = new int[n + 1];
+        int[] location = new int[n + 1];
+        int[] first = new int[n + 2];
+        int[] last = new int[n + 2];
+        for (int s = 0; s <= n; s++)
+            last[block[s]]++;
+        for (int b = 1; b < numBlocks; b++)
+            first[b] = first[b - 1] + last[b - 1];
+        for (int b = 0; b < numBlocks; b++)
+            last[b] = first[b];
+        for (int s = 0; s <= n; s++) {
+            elements[last[block[s]]] = s;
+            location[s] = last[block[s]]++;
+        }
+
+        /* refine the partition until no splitter remains */
+        int[] marked = new int[n + 2];
+        int[] touched = new int[n + 2];
+        int[] splitter = new int[n + 1];
+        boolean[] waiting = new boolean[(n + 2) * Math.max(k, 1)];
+        Deque<Integer> worklist = new ArrayDeque<Integer>();
+        for (int b = 0; b < numBlocks; b++) {
+            for (int c = 0; c < k; c++) {
+                waiting[b * k + c] = true;
+                worklist.add(b * k + c);
+            }
+        }
+        while (!worklist.isEmpty()) {
+            int pair = worklist.poll();
+            waiting[pair] = false;
+            int a = pair / k, c = pair % k;
+            int size = last[a] - first[a];
+            System.arraycopy(elements, first[a], splitter, 0, size);
+            int numTouched = 0;
+            for (int i = 0; i < size; i++) {
+                int t = splitter[i];
+                for (int j = inverseStart[c * (n + 1) + t]; j < inverseStart[c * (n + 1) + t + 1]; j++) {
+                    int s = inverse[j];
+                    int b = block[s];
+                    if (location[s] < first[b] + marked[b])
+                        continue;   /* already marked */
+                    if (marked[b] == 0)
+                        touched[numTouched++] = b;
+                    /* move s to the end of the marked region at the front of its block */
+                    int swap = elements[first[b] + marked[b]];
+                    elements[location[s]] = swap;
+                    location[swap] = location[s];
+                    elements[first[b] + marked[b]] = s;
+                    location[s] = first[b] + marked[b];
+                    marked[b]++;
+                }
+            }
+            for (int i = 0; i < numTouched; i++) {
+                int b = touched[i];
+                if (marked[b] < last[b] - first[b]) {
+                    int split = numBlocks++;
+                    first[split] = first[b];
+                    last[split] = first[b] + marked[b];
+                    first[b] = last[split];
+                    for (int j = first[split]; j < last[split]; j++)
+                        block[elements[j]] = split;
+                    int smaller = (last[split] - first[split] <= last[b] - first[b] ? split : b);
+                    for (int d = 0; d < k; d++) {
+                        int next = (waiting[b * k + d] ? split : smaller);
+                        if (!waiting[next * k + d]) {
+                            waiting[next * k + d] = true;
+                            worklist.add(next * k + d);
+                        }
+                    }
+                }
+                marked[b] = 0;
+            }
+        }
+
+        /* build the minimized DFA, numbering blocks in order of first appearance */
+        DFA minimized = new DFAImpl(dfa.getIdentifier(), dfa.isCharClass());
+        minimized.setTokenClasses(dfa.getTokenClasses());
+        State[] blockStates = new State[numBlocks];
+        int start = numbers.get(dfa.getStartState());
+        blockStates[block[start]] = minimized.getStartState();
+        blockStates[block[start]].setAccepting(states[start].isAccepting());
+        minimized.setAcceptingTokenId(minimized.getStartState(), dfa.getAcceptingTokenId(states[start]));
+        for (int s = 0; s < n; s++) {
+            if (blockStates[block[s]] == null) {
+                blockStates[block[s]] = minimized.addState(states[s].isAccepting());
+                minimized.setAcceptingTokenId(blockStates[block[s]], dfa.getAcceptingTokenId(states[s]));
+            }
+        }
+        boolean[] done = new boolean[numBlocks];
+        for (int s = 0; s < n; s++) {
+            if (done[block[s]])
+                continue;
+            done[block[s]] = true;
+            for (int c = 0; c < k; c++) {
+                int t = delta[s * k + c];
+                if (t == n)
+                    continue;
+                for (char ch : partition.getMembers(c))
+                    blockStates[block[s]].addTransition(ch, blockStates[block[t]]);
+            }
+        }
+        for (String id : identifiers.keySet()) {
+            Set<State> minimizedStates = new LinkedHashSet<State>();
+            for (State state : identifiers.get(id)) {
+                Integer s = numbers.get(state);
+                if (s != null)
+                    minimizedStates.add(blockStates[block[s]]);
+            }
+            identifiers.put(id, minimizedStates);
+        }
+        return minimized;
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.williamdye.rex.automata;
+
+import java.util.*;
+
+/**
+ * An immutable, indexed view of an NFA. Numbers the states of the NFA, partitions its alphabet
+ * into character classes, and precomputes the epsilon closure of every state as a bit set, so that
+ * algorithms which simulate the NFA can work with sets of states as cheap <code>BitSet</code>s.
+ * @author William Dye
+ */
+public class IndexedNFA
+{
+
+    private static final int[] NO_STATES = new int[0];
+
+    private final State[] states;
+    private final Map<State, Integer> numbers;
+    private final AlphabetPartition partition;
+    private final BitSet[] closures;
+    private final int[][][] targets;
+    private final BitSet accepting;
+
+    /**
+     * Creates an <code>IndexedNFA</code> for the specified <code>nfa</code>.
+     * @param nfa the NFA to index
+     */
+    public IndexedNFA(NFA nfa)
+    {
+        /* include any state reachable from the start state, even if it was never added to the NFA */
+        List<State> all = new ArrayList<State>();
+        numbers = new HashMap<State, Integer>();
+        all.add(nfa.getStartState());
+        numbers.put(nfa.getStartState(), 0);
+        for (State state : nfa.getStates()) {
+            if (!numbers.containsKey(state)) {
+                numbers.put(state, all.size());
+                all.add(state);
+            }
+        }
+        for (int i = 0; i < all.size(); i++) {
+            State state = all.get(i);
+            for (char c : state.getTransitionChars()) {
+                if (!state.hasTransition(c))
+                    continue;
+                for (State next : state.getNextStates(c)) {
+                    if (!numbers.containsKey(next)) {
+                        numbers.put(next, all.size());
+                        all.add(next);
+                    }
+                }
+            }
+        }
+        states = all.toArray(new State[all.size()]);
+        partition = new AlphabetPartition(all, false);
+
+        final int n = states.length, k = partition.getNumClasses();
+        targets = new int[n][][];
+        accepting = new BitSet(n);
+        int[][] epsilons = new int[n][];
+        for (int s = 0; s < n; s++) {
+            if (states[s].isAccepting())
+                accepting.set(s);
+            epsilons[s] = number(states[s], NFAImpl.EPSILON);
+            targets[s] = new int[k][];
+            for (int c = 0; c < k; c++)
+                targets[s][c] = number(states[s], partition.getRepresentative(c));
+        }
+
+        /* compute each closure iteratively so that long chains of epsilon transitions cannot overflow the stack */
+        closures = new BitSet[n];
+        int[] stack = new int[n];
+        for (int s = 0; s < n; s++) {
+            BitSet closure = new BitSet(n);
+            int top = 0;
+            closure.set(s);
+            stack[top++] = s;
+            while (top > 0) {
+                int from = stack[--top];
+                for (int to : epsilons[from]) {
+                    if (!closure.get(to)) {
+                        closure.set(to);
+                        stack[top++] = to;
+                    }
+                }
+            }
+            closures[s] = closure;
+        }
+    }
+
+    /* Returns the numbers of the states to which the state transitions on c. */
+    private int[] number(State state, char c)
+    {
+        if (!state.hasTransition(c))
+            return NO_STATES;
+        Set<State> next = state.getNextStates(c);
+        int[] result = new int[next.size()];
+        int i = 0;
+        for (State s : next)
+            result[i++] = numbers.get(s);
+        return result;
+    }
+
+    /**
+     * Accessor for the number of states in the indexed NFA.
+     * @return the number of states
+     */
+    public int getNumStates()
+    {
+        return states.length;
+    }
+
+    /**
+     * Returns the state with the specified number.
+     * @param number the number of the state
+     * @return the state with that number
+     */
+    public State getState(int number)
+    {
+        return states[number];
+    }
+
+    /**
+     * Returns the number of the specified state.
+     * @param state the state to look up
+     * @return the number of the state, or <code>-1</code> if the state is not part of the NFA
+     */
+    public int getNumber(State state)
+    {
+        Integer number = numbers.get(state);
+        return (number == null ? -1 : number);
+    }
+
+    /**
+     * Accessor for the partition of the NFA's alphabet into character classes.
+     * @return the alphabet partition
+     */
+    public AlphabetPartition getPartition()
+    {
+        return partition;
+    }
+
+    /**
+     * Returns the epsilon closure of the start state. The returned set must not be modified.
+     * @return the set of states reachable from the start state without consuming a character
+     */
+    public BitSet getStartClosure()
+    {
+        return closures[0];
+    }
+
+    /**
+     * Returns the epsilon closure of the state with the specified number. The returned set must not be modified.
+     * @param state the number of the state
+     * @return the set of states reachable from the state without consuming a character
+     */
+    public BitSet getClosure(int state)
+    {
+        return closures[state];
+    }
+
+    /**
+     * Returns the set of accepting states. The returned set must not be modified.
+     * @return the numbers of the accepting states
+     */
+    public BitSet getAcceptingStates()
+    {
+        return accepting;
+    }
+
+    /**
+     * Returns the numbers of the states to which the state with the specified number transitions
+     * on a character in the class <code>classId</code>, not including epsilon closures.
+     * The returned array must not be modified.
+     * @param state the number of the state from which to transition
+     * @param classId the id of the character class on which to transition
+     * @return the numbers of the target states
+     */
+    public int[] getTargets(int state, int classId)
+    {
+        return targets[state][classId];
+    }
+
+    /**
+     * Adds the epsilon closure of every state reachable from a state in <code>from</code>
+     * on a character in the class <code>classId</code> to <code>into</code>.
+     * @param from the set of states from which to transition
+     * @param classId the id of the character class on which to transition
+     * @param into the set to which the resulting states are added
+     */
+    public void move(BitSet from, int classId, BitSet into)
+    {
+        for (int s = from.nextSetBit(0); s >= 0; s = from.nextSetBit(s + 1)) {
+            for (int t : targets[s][classId])
+                into.or(closures[t]);
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+package com.williamdye.rex.automata;
+
+import java.util.*;
+
+/**
+ * A DFA that is constructed on demand from an NFA. Each DFA state (a set of NFA states) and each
+ * transition is computed the first time a cursor needs it and then cached for every later scan.
+ * Once the cache holds <code>maxStates</code> states, cursors that would need a new state fall back
+ * to simulating the NFA directly, so pathological patterns cannot exhaust memory.
+ * @author William Dye
+ */
+public class LazyDFA implements Recognizer
+{
+
+    /** The default maximum number of DFA states to cache. */
+    public static final int DEFAULT_MAX_STATES = 10000;
+
+    /* Marks a transition that has not been computed yet. */
+    private static final int UNKNOWN = -2;
+
+    /* Returned by transition() when the target state would exceed the cache. Since the cache never
+     * shrinks, such a transition is remembered like any other. */
+    private static final int OVERFLOW = -3;
+
+    private final IndexedNFA nfa;
+    private final AlphabetPartition partition;
+    private final BitSet acceptingStates;
+    private final int alphabetSize;
+    private final int maxStates;
+
+    /* the cache; guarded by this */
+    private final List<BitSet> subsets;
+    private final Map<BitSet, Integer> numbers;
+    private int[] next;
+    private boolean[] accepting;
+
+    /**
+     * Creates a <code>LazyDFA</code> for the specified <code>nfa</code> that caches at most
+     * <code>DEFAULT_MAX_STATES</code> states.
+     * @param nfa the NFA from which to build DFA states
+     * @param acceptingStates the NFA states that are accepting
+     */
+    public LazyDFA(NFA nfa, Set<State> acceptingStates)
+    {
+        this(nfa, acceptingStates, DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Creates a <code>LazyDFA</code> for the specified <code>nfa</code> that caches at most
+     * <code>maxStates</code> states.
+     * @param nfa the NFA from which to build DFA states
+     * @param acceptingStates the NFA states that are accepting
+     * @param maxStates the maximum number of DFA states to cache (at least 1)
+     */
+    public LazyDFA(NFA nfa, Set<State> acceptingStates, int maxStates)
+    {
+        this(new IndexedNFA(nfa), acceptingStates, maxStates);
+    }
+
+    /**
+     * Creates a <code>LazyDFA</code> for an already-indexed NFA that caches at most
+     * <code>maxStates</code> states. The NFA's own accepting states are used.
+     * @param nfa the indexed NFA from which to build DFA states
+     * @param maxStates the maximum number of DFA states to cache (at least 1)
+     */
+    public LazyDFA(IndexedNFA nfa, int maxStates)
+    {
+        this(nfa, null, maxStates);
+    }
+
+    /* Creates a LazyDFA accepting the specified states, or the NFA's own accepting states if null. */
+    private LazyDFA(IndexedNFA nfa, Set<State> acceptingStates, int maxStates)
+    {
+        this.nfa = nfa;
+        this.partition = nfa.getPartition();
+        if (acceptingStates == null)
+            this.acceptingStates = nfa.getAcceptingStates();
+        else {
+            this.acceptingStates = new BitSet(nfa.getNumStates());
+            for (State state : acceptingStates) {
+                int number = nfa.getNumber(state);
+                if (number >= 0)
+                    this.acceptingStates.set(number);
+            }
+        }
+        this.alphabetSize = partition.getNumClasses();
+        this.maxStates = Math.max(maxStates, 1);
+        subsets = new ArrayList<BitSet>();
+        numbers = new HashMap<BitSet, Integer>();
+        next = new int[0];
+        accepting = new boolean[0];
+        addState(nfa.getStartClosure());
+    }
+
+    /**
+     * Accessor for the number of DFA states that have been constructed so far.
+     * @return the number of cached states
+     */
+    public synchronized int getNumStates()
+    {
+        return subsets.size();
+    }
+
+    @Override
+    public Cursor newCursor()
+    {
+        return new LazyCursor();
+    }
+
+    /* Caches a new DFA state for the specified subset and returns its number. */
+    private int addState(BitSet subset)
+    {
+        int number = subsets.size();
+        subsets.add(subset);
+        numbers.put(subset, number);
+        if ((number + 1) * alphabetSize > next.length) {
+            int capacity = Math.max(16, 2 * (number + 1));
+            int old = next.length;
+            next = Arrays.copyOf(next, capacity * alphabetSize);
+            Arrays.fill(next, old, next.length, UNKNOWN);
+            accepting = Arrays.copyOf(accepting, capacity);
+        }
+        accepting[number] = subset.intersects(acceptingStates);
+        return number;
+    }
+
+    /* Returns the state reached from state on classId, DEAD_STATE, or OVERFLOW. */
+    private synchronized int transition(int state, int classId)
+    {
+        int target = next[state * alphabetSize + classId];
+        if (target != UNKNOWN)
+            return target;
+        BitSet subset = new BitSet(nfa.getNumStates());
+        nfa.move(subsets.get(state), classId, subset);
+        if (subset.isEmpty())
+            target = CompiledDFA.DEAD_STATE;
+        else {
+            Integer number = numbers.get(subset);
+            if (number != null)
+                target = number;
+            else if (subsets.size() >= maxStates)
+                target = OVERFLOW;
+            else
+                target = addState(subset);
+        }
+        next[state * alphabetSize + classId] = target;
+        return target;
+    }
+
+    /* Returns whether the cached state is accepting. */
+    private synchronized boolean isAccepting(int state)
+    {
+        return accepting[state];
+    }
+
+    /* Returns the subset for the cached state. The subset must not be modified. */
+    private synchronized BitSet getSubset(int state)
+    {
+        return subsets.get(state);
+    }
+
+    /* Returns the number of the cached state for the subset, or -1 if it is not cached. */
+    private synchronized int lookup(BitSet subset)
+    {
+        Integer number = numbers.get(subset);
+        return (number == null ? -1 : number);
+    }
+
+
+    /**
+     * Cursor implementation that keeps its own copy of the transitions it has already looked up,
+     * so that it only synchronizes with other cursors on a cache miss.
+     */
+    protected class LazyCursor implements Cursor
+    {
+
+        private int state;
+        private int[] transitions;
+        private byte[] known;
+        private BitSet simulated;
+        private BitSet scratch;
+
+        /**
+         * Creates a new <code>LazyCursor</code> positioned at the start state.
+         */
+        public LazyCursor()
+        {
+            transitions = new int[0];
+            known = new byte[0];
+            remember(0);
+            reset();
+        }
+
+        @Override
+        public void reset()
+        {
+            state = 0;
+            simulated = null;
+        }
+
+        @Override
+        public boolean advance(char c)
+        {
+            int classId = partition.getClassId(c);
+            if (classId < 0)
+                return false;
+            if (simulated != null)
+                return simulate(classId);
+            int index = state * alphabetSize + classId;
+            int target = (index < transitions.length ? transitions[index] : UNKNOWN);
+            if (target == UNKNOWN) {
+                target = transition(state, classId);
+                if (target >= 0)
+                    remember(target);
+                transitions[index] = target;
+            }
+            if (target == OVERFLOW) {
+                simulated = (BitSet)getSubset(state).clone();
+                return simulate(classId);
+            }
+            if (target == CompiledDFA.DEAD_STATE)
+                return false;
+            state = target;
+            return true;
+        }
+
+        @Override
+        public boolean isAccepting()
+        {
+            return (simulated == null ? known[state] == 2 : simulated.intersects(acceptingStates));
+        }
+
+        /* Grows the local tables to cover the specified state and records whether it is accepting. */
+        private void remember(int number)
+        {
+            if ((number + 1) * alphabetSize > transitions.length || number >= known.length) {
+                int capacity = Math.max(16, 2 * (number + 1));
+                int old = transitions.length;
+                transitions = Arrays.copyOf(transitions, capacity * alphabetSize);
+                Arrays.fill(transitions, old, transitions.length, UNKNOWN);
+                known = Arrays.copyOf(known, capacity);
+            }
+            if (known[number] == 0)
+                known[number] = (byte)(LazyDFA.this.isAccepting(number) ? 2 : 1);
+        }
+
+        /* Steps the NFA simulation; returns to the cached DFA if the new subset has been cached. */
+        private boolean simulate(int classId)
+        {
+            if (scratch == null)
+                scratch = new BitSet(nfa.getNumStates());
+            scratch.clear();
+            nfa.move(simulated, classId, scratch);
+            if (scratch.isEmpty())
+                return false;
+            BitSet tmp = simulated;
+            simulated = scratch;
+            scratch = tmp;
+            int number = lookup(simulated);
+            if (number >= 0) {
+                remember(number);
+                state = number;
+                simulated = null;
+            }
+            return true;
+        }
+
+    }   /* end nested LazyCursor class */
+
+}   /* end LazyDFA class */
@@ -16,94 +16,101 @@ public class NFAToDFAConverter
     /**
      * Converts the specified <code>nfa</code> into an equivalent DFA.
      * Updates the mapping of <code>identifiers</code> to correspond to the generated DFA.
+     * The identifiers become the token classes of the DFA, with priority given in the
+     * iteration order of the map, and every DFA state records the id of the
+     * highest-priority token class that it accepts.
      * @param nfa the NFA to convert to a DFA
      * @param identifiers a mapping from identifiers (token classes) to sets of states
      * @return the DFA generated from the NFA
      */
     public static DFA convert(NFA nfa, Map<String, Set<State>> identifiers)
     {
-        /* set up states and transitions */
+        IndexedNFA indexed = new IndexedNFA(nfa);
+        AlphabetPartition partition = indexed.getPartition();
         DFA dfa = new DFAImpl("<COMBINED>");
-        Set<State> startStates = epsilon(nfa.getStartState());
-        Map<Set<State>, State> map = new LinkedHashMap<Set<State>, State>();
-        map.put(startStates, dfa.getStartState());
-        Stack<Set<State>> toConsider = new Stack<Set<State>>();
-        toConsider.push(startStates);
-        while (toConsider.size() > 0) {
-            Set<State> states = toConsider.pop();
-            State dfaState = map.get(states);
-            Set<Character> chars = new LinkedHashSet<Character>();
-            for (State state : states)
-                chars.addAll(state.getTransitionChars());
-            chars.remove(NFAImpl.EPSILON);
-            for (char ch : chars) {
-                Set<State> next = new LinkedHashSet<State>();
-                for (State state : states) {
-                    if (state.hasTransition(ch)) {
-                        for (State s : state.getNextStates(ch))
-                            next.addAll(epsilon(s));
-                    }
-                }
-                State nextState = map.get(next);
-                if (nextState == null) {
-                    nextState = dfa.addState(false);
-                    map.put(next, nextState);
-                    toConsider.push(next);
+
+        /* record which token classes each NFA state accepts */
+        List<String> tokenClasses = new ArrayList<String>(identifiers.keySet());
+        dfa.setTokenClasses(tokenClasses);
+        BitSet[] nfaTokens = new BitSet[indexed.getNumStates()];
+        BitSet acceptingStates = new BitSet(indexed.getNumStates());
+        for (int tokenId = 0; tokenId < tokenClasses.size(); tokenId++) {
+            for (State s : identifiers.get(tokenClasses.get(tokenId))) {
+                int number = indexed.getNumber(s);
+                if (number >= 0) {
+                    if (nfaTokens[number] == null)
+                        nfaTokens[number] = new BitSet(tokenClasses.size());
+                    nfaTokens[number].set(tokenId);
+                    acceptingStates.set(number);
                 }
-                dfaState.addTransition(ch, nextState);
             }
         }
-        /* update accepting states and identifier mapping */
-        Map<String, Set<State>> dfaIdentifiers = new LinkedHashMap<String, Set<State>>();
-        for (String id : identifiers.keySet()) {
-            Set<State> stateSet = identifiers.get(id);
-            for (Set<State> set : map.keySet()) {
-                for (State s : stateSet) {
-                    boolean found = false;
-                    for (State tmp : set) {
-                        if (s.equals(tmp)) {
-                            found = true;
-                            break;
-                        }
-                    }
-                    if (found) {
-                        State accept = map.get(set);
-                        accept.setAccepting(true);
-                        Set<State> dfaStates = dfaIdentifiers.get(id);
-                        if (dfaStates == null) {
-                            dfaStates = new LinkedHashSet<State>();
-                            dfaStates.add(accept);
-                            dfaIdentifiers.put(id, dfaStates);
-                        } else
-                            dfaStates.add(accept);
-                    }
+        List<Set<State>> dfaIdentifiers = new ArrayList<Set<State>>();
+        for (int tokenId = 0; tokenId < tokenClasses.size(); tokenId++)
+            dfaIdentifiers.add(new LinkedHashSet<State>());
+
+        /* set up states and transitions, considering one character from each equivalence class */
+        List<BitSet> subsets = new ArrayList<BitSet>();
+        List<State> dfaStates = new ArrayList<State>();
+        Map<BitSet, Integer> map = new HashMap<BitSet, Integer>();
+        BitSet startStates = indexed.getStartClosure();
+        subsets.add(startStates);
+        dfaStates.add(dfa.getStartState());
+        map.put(startStates, 0);
+        setAccepting(dfa, dfa.getStartState(), startStates, acceptingStates, nfaTokens, dfaIdentifiers);
+        Deque<Integer> toConsider = new ArrayDeque<Integer>();
+        toConsider.add(0);
+        BitSet next = new BitSet(indexed.getNumStates());
+        while (!toConsider.isEmpty()) {
+            int current = toConsider.poll();
+            BitSet states = subsets.get(current);
+            State dfaState = dfaStates.get(current);
+            for (int classId = 0; classId < partition.getNumClasses(); classId++) {
+                next.clear();
+                indexed.move(states, classId, next);
+                if (next.isEmpty())
+                    continue;
+                Integer nextNumber = map.get(next);
+                if (nextNumber == null) {
+                    BitSet key = (BitSet)next.clone();
+                    nextNumber = subsets.size();
+                    subsets.add(key);
+                    State added = dfa.addState(false);
+                    dfaStates.add(added);
+                    map.put(key, nextNumber);
+                    setAccepting(dfa, added, key, acceptingStates, nfaTokens, dfaIdentifiers);
+                    toConsider.add(nextNumber);
                 }
+                State nextState = dfaStates.get(nextNumber);
+                for (char c : partition.getMembers(classId))
+                    dfaState.addTransition(c, nextState);
             }
         }
+
+        /* update identifier mapping */
         identifiers.clear();
-        for (String id : dfaIdentifiers.keySet())
-            identifiers.put(id, dfaIdentifiers.get(id));
+        for (int tokenId = 0; tokenId < tokenClasses.size(); tokenId++) {
+            if (!dfaIdentifiers.get(tokenId).isEmpty())
+                identifiers.put(tokenClasses.get(tokenId), dfaIdentifiers.get(tokenId));
+        }
         return dfa;
     }
 
-    /* Returns the epsilon closure for the specified state. */
-    private static Set<State> epsilon(State state)
+    /* Marks a newly created DFA state as accepting every token class accepted by a state in its subset. */
+    private static void setAccepting(DFA dfa, State dfaState, BitSet subset, BitSet acceptingStates,
+                                     BitSet[] nfaTokens, List<Set<State>> dfaIdentifiers)
     {
-        return epsilon(state, new LinkedHashSet<State>());
-    }
-
-    /* Helper for the epsilon() method. */
-    private static Set<State> epsilon(State state, Set<State> result)
-    {
-        result.add(state);
-        if (state.hasTransition(NFAImpl.EPSILON)) {
-            Set<State> next = state.getNextStates(NFAImpl.EPSILON);
-            for (State s : next) {
-                if (!result.contains(s))
-                    result = epsilon(s, result);
-            }
+        if (!subset.intersects(acceptingStates))
+            return;
+        BitSet tokens = new BitSet(dfaIdentifiers.size());
+        for (int s = subset.nextSetBit(0); s >= 0; s = subset.nextSetBit(s + 1)) {
+            if (nfaTokens[s] != null)
+                tokens.or(nfaTokens[s]);
         }
-        return result;
+        dfaState.setAccepting(true);
+        dfa.setAcceptingTokenId(dfaState, tokens.nextSetBit(0));
+        for (int tokenId = tokens.nextSetBit(0); tokenId >= 0; tokenId = tokens.nextSetBit(tokenId + 1))
+            dfaIdentifiers.get(tokenId).add(dfaState);
     }
 
 }
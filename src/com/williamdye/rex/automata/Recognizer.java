@@ -0,0 +1,17 @@
+package com.williamdye.rex.automata;
+
+/**
+ * Represents a compiled pattern that can be run over input one character at a time.
+ * A recognizer may be shared between threads; each scan of the input uses its own cursor.
+ * @author William Dye
+ */
+public interface Recognizer
+{
+
+    /**
+     * Creates a new cursor positioned at the start state of a recognizer.
+     * @return a new cursor for the recognizer
+     */
+    public Cursor newCursor();
+
+}
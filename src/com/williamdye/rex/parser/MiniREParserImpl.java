@@ -16,6 +16,7 @@ public class MiniREParserImpl implements MiniREParser
     protected AST ast;
     protected ASTNode current;
     protected MiniREToken token;
+    protected MiniREToken pushedBack;
 
     /**
      * Creates a new <code>MiniREParserImpl</code> that reads from the provided tokenizer.
@@ -27,6 +28,7 @@ public class MiniREParserImpl implements MiniREParser
         ast = new ASTImpl();
         current = ast.getStartNode();
         token = null;
+        pushedBack = null;
     }
 
     @Override
@@ -156,7 +158,7 @@ public class MiniREParserImpl implements MiniREParser
     {
         MiniRETokenType type = peekToken().getType();
         if (MiniRETokenType.COMMA == type) {
-            tokenizer.consume(); /* consume comma token */
+            getToken(); /* consume comma token */
             exp(prev);
             exp_list_tail(prev.getNext());
         }
@@ -227,13 +229,29 @@ public class MiniREParserImpl implements MiniREParser
         return find;
     }
 
-    /* <file-name> => ASCII-STR */
+    /* <file-name> => ASCII-STR <file-name-tail> */
     private void file_name(ASTNode prev) throws ParseException
     {
         token = getToken();
         if (MiniRETokenType.ASCII_STRING != token.getType())
             throw new ParseException("file_name: Found token \"" + token.getTokenString() + "\"; expected ASCII_STR", -17);
         prev.setNext(new ASTNodeImpl(token, ASTNodeType.FILENAME));
+        file_name_tail(prev.getNext());
+    }
+
+    /* <file-name-tail> => , ASCII-STR <file-name-tail> | epsilon */
+    private void file_name_tail(ASTNode prev) throws ParseException
+    {
+        if (peekToken() == null || MiniRETokenType.COMMA != peekToken().getType())
+            return;
+        MiniREToken comma = getToken();
+        if (peekToken() == null || MiniRETokenType.ASCII_STRING != peekToken().getType()) {
+            pushedBack = comma; /* the comma separates expressions in a print statement */
+            return;
+        }
+        token = getToken();
+        prev.setNext(new ASTNodeImpl(token, ASTNodeType.FILENAME));
+        file_name_tail(prev.getNext());
     }
 
     /* <bin-op> => diff | union | inters */
@@ -300,16 +318,21 @@ public class MiniREParserImpl implements MiniREParser
             exp(current);
     }
 
-    /* Returns (and consumes) the next token in the buffer. */
+    /* Returns (and consumes) the next token in the buffer, or the token that was pushed back. */
     private MiniREToken getToken()
     {
+        if (pushedBack != null) {
+            MiniREToken tok = pushedBack;
+            pushedBack = null;
+            return tok;
+        }
         return (MiniREToken)tokenizer.getNextToken();
     }
 
-    /* Returns (but does not consume) the next token in the buffer. */
+    /* Returns (but does not consume) the next token in the buffer, or the token that was pushed back. */
     private MiniREToken peekToken()
     {
-        return (MiniREToken)tokenizer.peek();
+        return (pushedBack != null ? pushedBack : (MiniREToken)tokenizer.peek());
     }
 
 }
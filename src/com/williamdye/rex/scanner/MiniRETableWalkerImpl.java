@@ -1,9 +1,11 @@
 package com.williamdye.rex.scanner;
 
 import java.io.File;
+import java.util.Arrays;
 
 import com.williamdye.rex.automata.*;
 import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
 
 /**
  * MiniRE-specific implementation of the <code>TableWalker</code> interface.
@@ -21,6 +23,10 @@ public class MiniRETableWalkerImpl extends TableWalkerImpl
     /** The token type for match tokens. */
     public static final String MATCH_TOKEN = "<MATCH>";
 
+    protected Cursor cursor;
+    protected SymbolTable symbols;
+    protected char[] chars;
+
     /**
      * Creates a new <code>MiniRETableWalkerImpl</code> using the specified DFA and reading from the specified file.
      * @param automaton the DFA to be used by the table walker
@@ -28,15 +34,38 @@ public class MiniRETableWalkerImpl extends TableWalkerImpl
      */
 	public MiniRETableWalkerImpl(DFA automaton, File file)
 	{
-		super(automaton, file, null);
+		this(new CompiledDFAImpl(automaton), file);
 	}
 
-    /* Helper method for next(). Handles reading from the buffer and generating new tokens. */
+    /**
+     * Creates a new <code>MiniRETableWalkerImpl</code> using the specified recognizer and reading from the specified file.
+     * @param recognizer the recognizer (such as a compiled or lazily-constructed DFA) to be used by the table walker
+     * @param file the file for the table walker to read
+     */
+    public MiniRETableWalkerImpl(Recognizer recognizer, File file)
+    {
+        this(recognizer, new MappedCharBuffer(file));
+    }
+
+    /**
+     * Creates a new <code>MiniRETableWalkerImpl</code> using the specified recognizer and reading from the specified input buffer.
+     * @param recognizer the recognizer (such as a compiled or lazily-constructed DFA) to be used by the table walker
+     * @param input the buffer for the table walker to read
+     */
+    public MiniRETableWalkerImpl(Recognizer recognizer, InputBuffer input)
+    {
+        super(input);
+        cursor = recognizer.newCursor();
+        symbols = new SymbolTable();
+        chars = new char[64];
+    }
+
+    /* Helper method for next(). Handles reading from the buffer and generating new tokens.
+     * The characters of a token are collected in a reusable array, and matches are interned. */
     protected SourceToken readToken()
     {
         SourceToken token;
-        String longestMatch = "";
-        StringBuilder builder = new StringBuilder();
+        int length = 0, longestMatch = 0;
         if (waiting)
             waiting = false;
         else
@@ -49,30 +78,37 @@ public class MiniRETableWalkerImpl extends TableWalkerImpl
             else
                 token = new SourceToken(EOF_TOKEN, null);
         } else {
-            State state = dfa.getStartState();
-            while (state.hasTransition(ch)) {
-                builder.append(ch);
-                state = state.getNextState(ch);
+            cursor.reset();
+            while (cursor.advance(ch)) {
+                length = append(length, ch);
                 ch = buffer.getNextChar();
-                if(state.isAccepting()){
-                	longestMatch = builder.toString();
-                }
+                if (cursor.isAccepting())
+                    longestMatch = length;
             }
-            if (state.isAccepting()) {
+            if (cursor.isAccepting()) {
                 waiting = true;
-                token = new SourceToken(MATCH_TOKEN, builder.toString());
+                token = new SourceToken(MATCH_TOKEN, symbols.intern(chars, 0, length));
             } else {
-                builder.append(ch);
-                token = new SourceToken(INVALID_TOKEN, builder.toString());
+                length = append(length, ch);
+                token = new SourceToken(INVALID_TOKEN, new String(chars, 0, length));
             }
         }
-        if (INVALID_TOKEN.equals(token.getTokenType()) && longestMatch.length() > 0) {
-            token = new SourceToken(MATCH_TOKEN, longestMatch);
-            buffer.setIndex(buffer.getIndex() - (builder.toString().length() - longestMatch.length() - 1));
+        if (INVALID_TOKEN.equals(token.getTokenType()) && longestMatch > 0) {
+            token = new SourceToken(MATCH_TOKEN, symbols.intern(chars, 0, longestMatch));
+            buffer.setIndex(buffer.getIndex() - (length - longestMatch - 1));
         }
         return token;
     }
 
+    /* Appends the character at the specified position of the token, growing the array if necessary. */
+    private int append(int length, char c)
+    {
+        if (length == chars.length)
+            chars = Arrays.copyOf(chars, 2 * length);
+        chars[length] = c;
+        return length + 1;
+    }
+
     /**
      * Returns the current index of the table walker's internal buffer.
      * @return the buffer's index (position within the current line)
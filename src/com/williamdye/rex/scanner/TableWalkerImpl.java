@@ -15,9 +15,9 @@ import java.util.*;
  */
 public class TableWalkerImpl implements TableWalker
 {
-	protected DFA dfa;
-    protected CharBuffer buffer;
-    protected Map<String, Set<State>> map;
+	protected CompiledDFA table;
+    protected String[] labels;
+    protected InputBuffer buffer;
     protected SourceToken current;
     protected boolean paused;
 	protected boolean waiting;
@@ -26,18 +26,74 @@ public class TableWalkerImpl implements TableWalker
     /**
      * Creates a new <code>TableWalkerImpl</code> using the specified DFA, reading from
      * the specified file, and using the provided mapping from identifier to accepting states.
+     * If a state belongs to several identifiers, the identifier that comes first in the
+     * iteration order of <code>mapping</code> takes priority.
      * @param automaton the DFA to be used by the table walker
      * @param file the file for the table walker to read
      * @param mapping a map from identifiers to sets of accepting states
      */
 	public TableWalkerImpl(DFA automaton, File file, Map<String, Set<State>> mapping)
 	{
-		dfa = automaton;
-        buffer = new CharBuffer(file);
-        map = mapping;
+		table = new CompiledDFAImpl(automaton);
+        labels = new String[table.getNumStates()];
+        Map<State, Integer> numbers = new HashMap<State, Integer>();
+        for (State state : automaton.getStates())
+            numbers.put(state, numbers.size());
+        for (String id : mapping.keySet()) {
+            for (State state : mapping.get(id)) {
+                Integer number = numbers.get(state);
+                if (number != null && labels[number] == null)
+                    labels[number] = id;
+            }
+        }
+        buffer = new MappedCharBuffer(file);
         clearState();
 	}
 
+    /**
+     * Creates a new <code>TableWalkerImpl</code> that runs directly against the specified compiled DFA
+     * and reads from the specified file. Tokens are labeled with the highest-priority token class
+     * accepted by the final state, as recorded in the compiled DFA.
+     * @param automaton the compiled DFA to be used by the table walker
+     * @param file the file for the table walker to read
+     */
+    public TableWalkerImpl(CompiledDFA automaton, File file)
+    {
+        this(automaton, new MappedCharBuffer(file));
+    }
+
+    /**
+     * Creates a new <code>TableWalkerImpl</code> that runs directly against the specified compiled DFA
+     * and reads from the specified input buffer.
+     * @param automaton the compiled DFA to be used by the table walker
+     * @param input the buffer for the table walker to read
+     */
+    public TableWalkerImpl(CompiledDFA automaton, InputBuffer input)
+    {
+        table = automaton;
+        labels = new String[table.getNumStates()];
+        for (int state = 0; state < labels.length; state++) {
+            int tokenId = table.getAcceptingTokenId(state);
+            if (tokenId != DFA.NO_TOKEN)
+                labels[state] = table.getTokenClasses().get(tokenId);
+        }
+        buffer = input;
+        clearState();
+    }
+
+    /**
+     * Creates a new <code>TableWalkerImpl</code> that reads from the specified input buffer, for subclasses
+     * that do not step through a transition table of their own.
+     * @param input the buffer for the table walker to read
+     */
+    protected TableWalkerImpl(InputBuffer input)
+    {
+        table = null;
+        labels = null;
+        buffer = input;
+        clearState();
+    }
+
     @Override
     public boolean hasNextToken()
     {
@@ -90,14 +146,15 @@ public class TableWalkerImpl implements TableWalker
             else
                 token = new SourceToken("<EOF>", null);
         } else {
-            State state = dfa.getStartState();
+            int state = table.getStartState();
+            int next;
             StringBuilder builder = new StringBuilder();
-            while (state.hasTransition(ch)) {
+            while ((next = table.transition(state, ch)) != CompiledDFA.DEAD_STATE) {
                 builder.append(ch);
-                state = state.getNextState(ch);
+                state = next;
                 ch = buffer.getNextChar();
             }
-            if (state.isAccepting()) {
+            if (table.isAccepting(state)) {
                 waiting = true;
                 token = new SourceToken(getIdentifierFromState(state), builder.toString());
             } else {
@@ -108,16 +165,10 @@ public class TableWalkerImpl implements TableWalker
         return token;
     }
 
-    /* Returns the identifier corresponding to the provided accepting state. */
-    protected String getIdentifierFromState(State state)
+    /* Returns the identifier corresponding to the accepting state with the provided number. */
+    protected String getIdentifierFromState(int state)
     {
-        String id = "<INVALID>";
-        for (String string : map.keySet()) {
-            if (map.get(string).contains(state)) {
-                id = string;
-                break;
-            }
-        }
-        return id;
+        String id = labels[state];
+        return (id == null ? "<INVALID>" : id);
     }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import java.util.*;
 
 /**
  * Represents a list of indices in a certain file that pertain to a certain string.
+ * Matches are numbered from <code>0</code> to <code>getMatchCount() - 1</code> in the order
+ * in which they were first added; adding a match that is already present has no effect.
  * @author TJ Harrison
  */
 public interface Metadata 
@@ -15,15 +17,37 @@ public interface Metadata
      * @param index the index within the line
 	 */
 	public void addMatch(int line, int index);
-	
+
 	/**
 	 * Accessor method for the filename for this metadata.
 	 * @return the file this Metadata is representing 
 	 */
 	public String getFile();
+
+    /**
+     * Accessor for the number of distinct matches in this Metadata.
+     * @return the number of matches
+     */
+    public int getMatchCount();
+
+    /**
+     * Accessor for the line number of a single match.
+     * @param i the number of the match, from <code>0</code> to <code>getMatchCount() - 1</code>
+     * @return the line number of the match
+     */
+    public int getLine(int i);
+
+    /**
+     * Accessor for the index (within its line) of a single match.
+     * @param i the number of the match, from <code>0</code> to <code>getMatchCount() - 1</code>
+     * @return the index of the match
+     */
+    public int getIndex(int i);
 	
 	/**
-	 * Accessor method for this Metadata's list of matches.
+	 * Accessor method for this Metadata's list of matches, each of which is a list holding the line
+     * number and then the index. The set is a copy, and building it boxes every match, so
+     * <code>getMatchCount()</code>, <code>getLine()</code> and <code>getIndex()</code> should be preferred.
 	 * @return the list of indices for this Metadata
 	 */
 	public Set<List<Integer>> getMatches();
@@ -4,13 +4,20 @@ import java.util.*;
 
 /**
  * Implementation of the Metadata interface.
+ * Each match is packed into a single <code>long</code> (the line number in the high 32 bits and the
+ * index in the low 32 bits) in a growable array. Scans add matches in increasing order, and while
+ * the array stays in increasing order it cannot hold a duplicate. Once a match is added out of order,
+ * the matches are also kept in a hash set, so that a duplicate is dropped as soon as it is added and
+ * reading the matches never changes them.
  * @author TJ Harrison
  */
 public class MetadataImpl implements Metadata 
 {
 
 	private String filename;
-	private LinkedHashSet<List<Integer>> matches;
+	private long[] matches;
+    private int size;
+    private Set<Long> added;     /* every match, once one has been added out of order */
 
     /**
      * Constructs a new <code>MetadataImpl</code> for the specified <code>file</code>,
@@ -22,7 +29,9 @@ public class MetadataImpl implements Metadata
 	public MetadataImpl(String file, int line, int index)
 	{
 		filename = file;
-        matches = new LinkedHashSet<List<Integer>>();
+        matches = new long[4];
+        size = 0;
+        added = null;
         if (line > 0)
 		    addMatch(line, index);
 	}
@@ -30,10 +39,17 @@ public class MetadataImpl implements Metadata
 	@Override
 	public void addMatch(int line, int index)
 	{
-        ArrayList<Integer> list = new ArrayList<Integer>();
-        list.add(line);
-        list.add(index);
-		matches.add(list);
+        long match = ((long)line << 32) | (index & 0xffffffffL);
+        if (added == null && size > 0 && match <= matches[size - 1]) {
+            added = new HashSet<Long>();
+            for (int i = 0; i < size; i++)
+                added.add(matches[i]);
+        }
+        if (added != null && !added.add(match))
+            return;     /* already present */
+        if (size == matches.length)
+            matches = Arrays.copyOf(matches, 2 * size);
+		matches[size++] = match;
 	}
 
 	@Override
@@ -42,10 +58,35 @@ public class MetadataImpl implements Metadata
 		return filename;
 	}
 
+    @Override
+    public int getMatchCount()
+    {
+        return size;
+    }
+
+    @Override
+    public int getLine(int i)
+    {
+        return (int)(matches[i] >>> 32);
+    }
+
+    @Override
+    public int getIndex(int i)
+    {
+        return (int)matches[i];
+    }
+
 	@Override
 	public Set<List<Integer>> getMatches()
 	{
-		return matches;
+        Set<List<Integer>> set = new LinkedHashSet<List<Integer>>();
+        for (int i = 0; i < size; i++) {
+            List<Integer> list = new ArrayList<Integer>();
+            list.add(getLine(i));
+            list.add(getIndex(i));
+            set.add(list);
+        }
+		return set;
 	}
 
 }
@@ -66,4 +66,10 @@ public class MiniREStringImpl implements MiniREString
                 (o == this || this.getString().equals(((MiniREStringImpl)o).getString())));
 	}
 
+    @Override
+    public int hashCode()
+    {
+        return string.hashCode();
+    }
+
 }
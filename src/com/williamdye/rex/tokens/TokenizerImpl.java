@@ -11,7 +11,7 @@ import java.io.File;
 public class TokenizerImpl implements Tokenizer
 {
 
-    protected CharBuffer buffer;
+    protected InputBuffer buffer;
     protected Token current;
     protected boolean paused;
 
@@ -35,6 +35,16 @@ public class TokenizerImpl implements Tokenizer
     	clearState();
     }
 
+    /**
+     * Constructs a <code>TokenizerImpl</code> that reads from the specified input buffer.
+     * @param input the buffer to be tokenized
+     */
+    public TokenizerImpl(InputBuffer input)
+    {
+        buffer = input;
+        clearState();
+    }
+
     @Override
     public Token getNextToken()
     {
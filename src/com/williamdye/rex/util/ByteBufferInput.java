@@ -0,0 +1,226 @@
+package com.williamdye.rex.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the bytes of a <code>ByteBuffer</code> one character at a time, without decoding them into
+ * a <code>String</code> per line. Each byte is read as one character (ISO-8859-1), so the character
+ * seen by a recognizer is the raw byte value; bytes outside of printable ASCII are not part of any
+ * MiniRE alphabet and so always act as dead transitions. <code>"\n"</code>, <code>"\r\n"</code> and
+ * <code>"\r"</code> are all recognized as line separators, and the end of the current line is only
+ * searched for as far as characters are read, so every byte is examined once.
+ * @author William Dye
+ */
+public class ByteBufferInput implements InputBuffer
+{
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    protected final long size;
+    private long lineStart, lineEnd, scanned;
+    private int index, line;
+    private boolean prev;
+
+    /**
+     * Instantiates a <code>ByteBufferInput</code> to read the remaining bytes of the specified buffer.
+     * The position of <code>buffer</code> is not modified.
+     * @param buffer the bytes to be read
+     */
+    public ByteBufferInput(ByteBuffer buffer)
+    {
+        this(buffer, 1);
+    }
+
+    /**
+     * Instantiates a <code>ByteBufferInput</code> to read the remaining bytes of the specified buffer,
+     * numbering its first line <code>firstLine</code>. The position of <code>buffer</code> is not modified.
+     * @param buffer the bytes to be read
+     * @param firstLine the line number of the first line in the buffer
+     */
+    public ByteBufferInput(ByteBuffer buffer, int firstLine)
+    {
+        this(buffer, buffer.remaining(), firstLine);
+    }
+
+    /**
+     * Instantiates a <code>ByteBufferInput</code> of <code>size</code> bytes, for subclasses that override
+     * <code>byteAt()</code> to read bytes from somewhere other than a single buffer.
+     * @param size the number of bytes of input
+     * @param firstLine the line number of the first line of input
+     */
+    protected ByteBufferInput(long size, int firstLine)
+    {
+        this(null, size, firstLine);
+    }
+
+    /* Initializes the buffer (possibly null), its size and the line counters. */
+    private ByteBufferInput(ByteBuffer buffer, long size, int firstLine)
+    {
+        bytes = buffer;
+        offset = (buffer == null ? 0 : buffer.position());
+        this.size = size;
+        lineStart = 0;
+        lineEnd = -1;
+        scanned = 0;
+        index = 0;
+        line = firstLine;
+        prev = true;
+    }
+
+    @Override
+    public char getNextChar()
+    {
+        return next(false);
+    }
+
+    @Override
+    public char peekNextChar()
+    {
+        return next(true);
+    }
+
+    @Override
+    public boolean advance()
+    {
+        if (lineEnd < 0)
+            findLineEnd(size);
+        long nextStart = lineEnd;
+        if (nextStart < size) {
+            byte b = byteAt(nextStart++);
+            if ('\r' == b && nextStart < size && '\n' == byteAt(nextStart))
+                nextStart++;
+        }
+        if (nextStart >= size)
+            return false;
+        lineStart = nextStart;
+        lineEnd = -1;
+        scanned = nextStart;
+        index = 0;
+        line++;
+        prev = true;
+        return true;
+    }
+
+    @Override
+    public int getIndex()
+    {
+        return index;
+    }
+
+    @Override
+    public void setIndex(int newIndex)
+    {
+        index = newIndex;
+    }
+
+    @Override
+    public int getLineNumber()
+    {
+        return line;
+    }
+
+    /**
+     * Returns the position in the input of the first byte of the current line.
+     * @return the position (0-indexed) at which the current line starts
+     */
+    public long getLineStart()
+    {
+        return lineStart;
+    }
+
+    /**
+     * Returns the position in the input of the line separator that ends the current line.
+     * @return the position (0-indexed) of the separator, or the size of the input if the line has none
+     */
+    public long getLineEnd()
+    {
+        if (lineEnd < 0)
+            findLineEnd(size);
+        return lineEnd;
+    }
+
+    /**
+     * Accessor for the size of the input.
+     * @return the number of bytes in the input
+     */
+    public long getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the bytes of the input from position <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive) as a string, one character per byte.
+     * @param from the position of the first byte
+     * @param to the position just past the last byte
+     * @return the bytes as a string
+     */
+    public String getText(long from, long to)
+    {
+        char[] chars = new char[(int)(to - from)];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = (char)(byteAt(from + i) & 0xff);
+        return new String(chars);
+    }
+
+    /**
+     * Writes the bytes of the input from position <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive) to the specified buffer, unchanged.
+     * @param from the position of the first byte
+     * @param to the position just past the last byte
+     * @param out the buffer to which the bytes are written
+     */
+    public void copy(long from, long to, OutputBuffer out)
+    {
+        ByteBuffer slice = bytes.duplicate();
+        slice.limit(offset + (int)to);
+        slice.position(offset + (int)from);
+        out.write(slice);
+    }
+
+    /**
+     * Returns the byte at the specified position of the input.
+     * @param pos the position (0-indexed) of the byte, which is less than the size of the input
+     * @return the byte at <code>pos</code>
+     */
+    protected byte byteAt(long pos)
+    {
+        return bytes.get(offset + (int)pos);
+    }
+
+    /* Helper for the getNextChar() and peekNextChar() methods. */
+    private char next(boolean peek)
+    {
+        if (!prev)
+            index++;
+        long pos = lineStart + index;
+        if (lineEnd < 0 && pos >= scanned)
+            findLineEnd(pos);
+        char next;
+        if (lineEnd >= 0 && pos >= lineEnd)
+            next = '\n';
+        else
+            next = (char)(byteAt(pos) & 0xff);
+        prev = peek;
+        return next;
+    }
+
+    /* Scans forward from the last position known to be on the current line, up to and including
+     * limit, and records the position of the line separator (or end of input) if one is found. */
+    private void findLineEnd(long limit)
+    {
+        while (scanned <= limit) {
+            if (scanned >= size) {
+                lineEnd = size;
+                return;
+            }
+            byte b = byteAt(scanned);
+            if ('\n' == b || '\r' == b) {
+                lineEnd = scanned;
+                return;
+            }
+            scanned++;
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.williamdye.rex.util;
+
+import java.io.*;
+
+/**
+ * Holds the bytes written to it until they are copied to another stream. The bytes are kept in memory
+ * until there are more than a limit, and are then moved to a temporary file that holds every later byte
+ * as well, so capturing a large amount of output does not exhaust the heap. Capture buffers are not
+ * thread-safe.
+ * @author William Dye
+ */
+public class CaptureBuffer extends OutputStream
+{
+
+    /** The default number of bytes kept in memory before they are moved to a file. */
+    public static final int DEFAULT_MEMORY_LIMIT = 1 << 20;
+
+    private final int memoryLimit;
+    private final ByteArrayOutputStream memory;
+    private File spill;
+    private OutputStream spillStream;
+
+    /**
+     * Creates a <code>CaptureBuffer</code> that keeps at most <code>DEFAULT_MEMORY_LIMIT</code> bytes in memory.
+     */
+    public CaptureBuffer()
+    {
+        this(DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * Creates a <code>CaptureBuffer</code> that keeps at most <code>memoryLimit</code> bytes in memory.
+     * @param memoryLimit the number of bytes beyond which the captured bytes are moved to a file
+     */
+    public CaptureBuffer(int memoryLimit)
+    {
+        this.memoryLimit = memoryLimit;
+        memory = new ByteArrayOutputStream();
+        spill = null;
+        spillStream = null;
+    }
+
+    @Override
+    public void write(int b)
+    {
+        write(new byte[] {(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+        try {
+            if (spillStream == null && memory.size() + length > memoryLimit)
+                spill();
+            if (spillStream != null)
+                spillStream.write(bytes, offset, length);
+            else
+                memory.write(bytes, offset, length);
+        } catch (IOException except) {
+            throw new IllegalStateException("Unable to capture output", except);
+        }
+    }
+
+    /**
+     * Accessor for whether the captured bytes have been moved to a file.
+     * @return <code>true</code> if the captured bytes are held in a file, <code>false</code> if in memory
+     */
+    public boolean isSpilled()
+    {
+        return (spill != null);
+    }
+
+    /**
+     * Writes every captured byte to the specified stream, then discards them (deleting the file that held
+     * them, if any), so that the buffer is empty again.
+     * @param out the stream to which the captured bytes are written
+     */
+    public void copyTo(OutputStream out)
+    {
+        try {
+            if (spill == null)
+                memory.writeTo(out);
+            else {
+                spillStream.close();
+                try (InputStream in = new FileInputStream(spill)) {
+                    byte[] block = new byte[1 << 16];
+                    for (int read = in.read(block); read > 0; read = in.read(block))
+                        out.write(block, 0, read);
+                }
+            }
+        } catch (IOException except) {
+            throw new IllegalStateException("Unable to copy captured output", except);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Discards every captured byte, deleting the file that held them, if any.
+     */
+    @Override
+    public void close()
+    {
+        memory.reset();
+        if (spill != null) {
+            try {
+                spillStream.close();
+            } catch (IOException except) {
+                /* the file is deleted either way */
+            }
+            spill.delete();
+            spill = null;
+            spillStream = null;
+        }
+    }
+
+    /* Moves the bytes captured so far to a new temporary file, to which every later byte is written. */
+    private void spill() throws IOException
+    {
+        spill = File.createTempFile("rex", ".out");
+        spillStream = new BufferedOutputStream(new FileOutputStream(spill), 1 << 16);
+        memory.writeTo(spillStream);
+        memory.reset();
+    }
+
+}
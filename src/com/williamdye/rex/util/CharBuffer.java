@@ -4,10 +4,11 @@ import java.io.*;
 import java.util.Scanner;
 
 /**
- * A helper class for reading a file one character at a time.
+ * A helper class for reading a file (or a string) one character at a time, using a <code>Scanner</code>
+ * to split the input into lines.
  * @author William Dye
  */
-public class CharBuffer
+public class CharBuffer implements InputBuffer
 {
 
     protected int index, line;
@@ -48,6 +49,7 @@ public class CharBuffer
     /**
      * Returns and consumes the next character in the file.
      */
+    @Override
     public char getNextChar()
     {
         return next(false);
@@ -56,6 +58,7 @@ public class CharBuffer
     /**
      * Returns, but does not consume, the next character in the file.
      */
+    @Override
     public char peekNextChar()
     {
         return next(true);
@@ -65,6 +68,7 @@ public class CharBuffer
      * If the file has a next line, advances to the next line and returns <code>true</code>.
      * Otherwise, returns <code>false</code>.
      */
+    @Override
     public boolean advance()
     {
         boolean hasNext = false;
@@ -96,16 +100,19 @@ public class CharBuffer
      * Accessor method for index in file.
      * @return current index of CharBuffer
      */
+    @Override
     public int getIndex()
     {
     	return index;
     }
 
+    @Override
     public void setIndex(int newIndex)
     {
         index = newIndex;
     }
 
+    @Override
     public int getLineNumber()
     {
         return line;
@@ -0,0 +1,87 @@
+package com.williamdye.rex.util;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Contains a class method to expand a glob pattern (such as <code>"logs/*.txt"</code> or
+ * <code>"data/**.csv"</code>) into the names of the files that match it.
+ * @author William Dye
+ */
+public class FileGlob
+{
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    private FileGlob() { /* prevent instantiation */ }
+
+    /**
+     * Returns <code>true</code> if the specified name contains any glob metacharacters.
+     * @param name the file name or pattern to test
+     * @return <code>true</code> if <code>name</code> is a glob pattern, <code>false</code> otherwise
+     */
+    public static boolean isPattern(String name)
+    {
+        for (int i = 0; i < name.length(); i++) {
+            if (GLOB_CHARS.indexOf(name.charAt(i)) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the names of the regular files that match the specified glob pattern, in sorted order.
+     * The names have the same form as the pattern: relative patterns give relative names.
+     * A name that contains no glob metacharacters is returned as it is, whether or not the file exists,
+     * and so is a name that does contain them (such as <code>"data[1].txt"</code>) if it names an
+     * existing file, which is then read literally rather than expanded.
+     * @param pattern the glob pattern to expand
+     * @return the matching file names
+     */
+    public static List<String> expand(String pattern)
+    {
+        if (!isPattern(pattern) || new File(pattern).exists())
+            return Collections.singletonList(pattern);
+
+        /* walk the directory tree below the longest prefix of the pattern that has no metacharacters */
+        String separator = File.separator;
+        int firstGlob = 0;
+        while (GLOB_CHARS.indexOf(pattern.charAt(firstGlob)) < 0)
+            firstGlob++;
+        int baseEnd = Math.max(pattern.lastIndexOf('/', firstGlob), pattern.lastIndexOf(separator, firstGlob));
+        final String prefix = (baseEnd < 0 ? "" : pattern.substring(0, baseEnd + 1));
+        final Path base = Paths.get(prefix.isEmpty() ? "." : prefix);
+        String rest = pattern.substring(prefix.length());
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + rest);
+        int depth = (rest.contains("**") ? Integer.MAX_VALUE : rest.split("/").length);
+
+        final List<String> names = new ArrayList<String>();
+        if (!Files.isDirectory(base))
+            return names;
+        try {
+            Files.walkFileTree(base, EnumSet.noneOf(FileVisitOption.class), depth, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                {
+                    Path relative = base.relativize(file);
+                    if (attrs.isRegularFile() && matcher.matches(relative))
+                        names.add(prefix + relative.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException except)
+                {
+                    return FileVisitResult.CONTINUE;   /* skip unreadable entries */
+                }
+            });
+        } catch (IOException except) {
+            throw new IllegalStateException("Unable to expand file pattern \"" + pattern + "\"", except);
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.williamdye.rex.util;
+
+/**
+ * Represents a source of characters that is read one line at a time. The end of every line
+ * (including the last one) is reported as a <code>'\n'</code> character, regardless of the line
+ * separator actually used in the input, and keeps being reported until <code>advance()</code> is called.
+ * @author William Dye
+ */
+public interface InputBuffer
+{
+
+    /**
+     * Returns and consumes the next character on the current line.
+     * @return the next character, or <code>'\n'</code> at the end of the line
+     */
+    public char getNextChar();
+
+    /**
+     * Returns, but does not consume, the next character on the current line.
+     * @return the next character, or <code>'\n'</code> at the end of the line
+     */
+    public char peekNextChar();
+
+    /**
+     * If the input has a next line, advances to the next line and returns <code>true</code>.
+     * Otherwise, returns <code>false</code>.
+     * @return <code>true</code> if there was another line, <code>false</code> otherwise
+     */
+    public boolean advance();
+
+    /**
+     * Accessor for the position of the most recently consumed character within the current line.
+     * @return the current index (0-indexed) within the line
+     */
+    public int getIndex();
+
+    /**
+     * Moves the buffer to the specified position within the current line. The next character
+     * consumed will be the one following <code>newIndex</code>.
+     * @param newIndex the new index within the line
+     */
+    public void setIndex(int newIndex);
+
+    /**
+     * Accessor for the number of the current line.
+     * @return the line number (1-indexed)
+     */
+    public int getLineNumber();
+
+}
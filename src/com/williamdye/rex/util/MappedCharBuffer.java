@@ -0,0 +1,145 @@
+package com.williamdye.rex.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file one character at a time directly from memory-mapped windows of the file, without
+ * decoding it into a <code>String</code> per line. Bytes and line separators are handled as by
+ * <code>ByteBufferInput</code>. Files larger than 2 GB are mapped one window at a time.
+ * @author William Dye
+ */
+public class MappedCharBuffer extends ByteBufferInput implements Closeable
+{
+
+    /** The number of bytes of the file that are mapped at once. */
+    public static final int WINDOW_SIZE = 1 << 26;
+
+    /* Windows start on a multiple of this many bytes. */
+    private static final int ALIGNMENT = 1 << 12;
+
+    private final FileChannel channel;
+    private final boolean closeAtEnd;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Instantiates a <code>MappedCharBuffer</code> to read the specified file.
+     * @param file the file to be read by this buffer
+     */
+    public MappedCharBuffer(File file)
+    {
+        this(file, true);
+    }
+
+    /**
+     * Instantiates a <code>MappedCharBuffer</code> to read the specified file, which is closed automatically
+     * at its end only if <code>closeAtEnd</code> is <code>true</code>.
+     * @param file the file to be read by this buffer
+     * @param closeAtEnd whether the file is closed once <code>advance()</code> reaches its end; if not, its
+     *        bytes can still be copied after the last line has been read, until it is closed explicitly
+     */
+    public MappedCharBuffer(File file, boolean closeAtEnd)
+    {
+        this(open(file), closeAtEnd);
+    }
+
+    /* Instantiates a MappedCharBuffer to read the whole of the specified channel. */
+    private MappedCharBuffer(FileChannel channel, boolean closeAtEnd)
+    {
+        super(sizeOf(channel), 1);
+        this.channel = channel;
+        this.closeAtEnd = closeAtEnd;
+        window = null;
+        windowStart = 0;
+    }
+
+    @Override
+    public boolean advance()
+    {
+        boolean hasNext = super.advance();
+        if (!hasNext && closeAtEnd)
+            close();
+        return hasNext;
+    }
+
+    /**
+     * Closes the underlying file. This happens automatically once <code>advance()</code> reaches the end of the
+     * file, but a buffer that may not be read to the end must be closed explicitly. Closing it again has no effect.
+     */
+    @Override
+    public void close()
+    {
+        try {
+            channel.close();
+        } catch (IOException except) {
+            /* nothing more can be read either way */
+        }
+    }
+
+    /**
+     * Writes the bytes of the file from position <code>from</code> (inclusive) to <code>to</code>
+     * (exclusive) to the specified buffer, unchanged, one mapped window at a time.
+     */
+    @Override
+    public void copy(long from, long to, OutputBuffer out)
+    {
+        while (from < to) {
+            map(from);
+            ByteBuffer slice = window.duplicate();
+            slice.limit((int)(Math.min(to, windowStart + window.limit()) - windowStart));
+            slice.position((int)(from - windowStart));
+            from += slice.remaining();
+            out.write(slice);
+        }
+    }
+
+    @Override
+    protected byte byteAt(long pos)
+    {
+        map(pos);
+        return window.get((int)(pos - windowStart));
+    }
+
+    /* Maps the window that contains the specified position, unless it is already mapped. */
+    private void map(long pos)
+    {
+        if (window == null || pos < windowStart || pos >= windowStart + window.limit()) {
+            windowStart = pos - (pos % ALIGNMENT);
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+            } catch (IOException except) {
+                throw new IllegalStateException("Unable to map file at position " + windowStart, except);
+            }
+        }
+    }
+
+    /* Opens the specified file for reading. */
+    private static FileChannel open(File file)
+    {
+        try {
+            return new RandomAccessFile(file, "r").getChannel();
+        } catch (FileNotFoundException except) {
+            throw new IllegalStateException("Attempt to construct MappedCharBuffer for nonexistent file", except);
+        }
+    }
+
+    /* Returns the size of the file open in the specified channel, which is closed if the size cannot be
+     * determined, since the buffer that would have closed it is then never constructed. */
+    private static long sizeOf(FileChannel channel)
+    {
+        try {
+            return channel.size();
+        } catch (IOException except) {
+            try {
+                channel.close();
+            } catch (IOException closeExcept) {
+                except.addSuppressed(closeExcept);
+            }
+            throw new IllegalStateException("Unable to determine the size of the file", except);
+        }
+    }
+
+}
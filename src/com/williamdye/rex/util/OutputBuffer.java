@@ -0,0 +1,227 @@
+package com.williamdye.rex.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Collects printed text in a large, reusable byte buffer, which is only written to the underlying
+ * stream (or file channel) when it is full or is explicitly flushed. Unlike a <code>PrintStream</code>,
+ * an <code>OutputBuffer</code> is neither synchronized nor flushed automatically, so printing many short
+ * strings costs a copy into the buffer rather than a write each. Characters are encoded with the
+ * platform's default charset, as by <code>System.out</code>; ASCII text is copied without an encoder.
+ * Output buffers are not thread-safe.
+ * @author William Dye
+ */
+public class OutputBuffer extends OutputStream
+{
+
+    /** The default size (in bytes) of the buffer. */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final OutputStream stream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Charset charset;
+
+    /**
+     * Creates an <code>OutputBuffer</code> that writes to the specified stream, with the default capacity.
+     * @param stream the stream to which the buffer is written
+     */
+    public OutputBuffer(OutputStream stream)
+    {
+        this(stream, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an <code>OutputBuffer</code> that writes to the specified stream in chunks of at most
+     * <code>capacity</code> bytes.
+     * @param stream the stream to which the buffer is written
+     * @param capacity the size of the buffer
+     */
+    public OutputBuffer(OutputStream stream, int capacity)
+    {
+        this(stream, null, capacity);
+    }
+
+    /**
+     * Creates an <code>OutputBuffer</code> that writes directly to the specified file channel, with the
+     * default capacity.
+     * @param channel the channel to which the buffer is written
+     */
+    public OutputBuffer(FileChannel channel)
+    {
+        this(channel, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an <code>OutputBuffer</code> that writes directly to the specified file channel in chunks of at
+     * most <code>capacity</code> bytes.
+     * @param channel the channel to which the buffer is written
+     * @param capacity the size of the buffer
+     */
+    public OutputBuffer(FileChannel channel, int capacity)
+    {
+        this(null, channel, capacity);
+    }
+
+    /* Creates an OutputBuffer that writes to either a stream or a channel. */
+    private OutputBuffer(OutputStream stream, FileChannel channel, int capacity)
+    {
+        this.stream = stream;
+        this.channel = channel;
+        buffer = (channel != null ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+        charset = Charset.defaultCharset();
+    }
+
+    /**
+     * Prints a string.
+     * @param string the string to print
+     */
+    public void print(String string)
+    {
+        int length = string.length();
+        for (int i = 0; i < length; i++) {
+            if (string.charAt(i) >= 0x80) {
+                byte[] bytes = string.getBytes(charset);
+                write(bytes, 0, bytes.length);
+                return;
+            }
+        }
+        for (int start = 0; start < length; ) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            int end = Math.min(length, start + buffer.remaining());
+            for (int i = start; i < end; i++)
+                buffer.put((byte)string.charAt(i));
+            start = end;
+        }
+    }
+
+    /**
+     * Prints a single character.
+     * @param c the character to print
+     */
+    public void print(char c)
+    {
+        if (c >= 0x80)
+            print(String.valueOf(c));
+        else
+            write(c);
+    }
+
+    /**
+     * Prints a string followed by a line separator.
+     * @param string the string to print
+     */
+    public void println(String string)
+    {
+        print(string);
+        print(LINE_SEPARATOR);
+    }
+
+    /**
+     * Prints a line separator.
+     */
+    public void println()
+    {
+        print(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void write(int b)
+    {
+        if (!buffer.hasRemaining())
+            flushBuffer();
+        buffer.put((byte)b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length)
+    {
+        while (length > 0) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of the specified byte buffer, whose position is advanced past them.
+     * @param bytes the bytes to write
+     */
+    public void write(ByteBuffer bytes)
+    {
+        while (bytes.hasRemaining()) {
+            if (!buffer.hasRemaining())
+                flushBuffer();
+            if (bytes.remaining() <= buffer.remaining())
+                buffer.put(bytes);
+            else {
+                ByteBuffer chunk = bytes.duplicate();
+                chunk.limit(chunk.position() + buffer.remaining());
+                buffer.put(chunk);
+                bytes.position(chunk.position());
+            }
+        }
+    }
+
+    /**
+     * Writes everything in the buffer to the underlying stream or channel, and flushes the stream.
+     */
+    @Override
+    public void flush()
+    {
+        if (buffer.position() > 0)
+            flushBuffer();
+        if (stream != null) {
+            try {
+                stream.flush();
+            } catch (IOException except) {
+                throw new IllegalStateException("Unable to flush output", except);
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffer and closes the underlying stream or channel.
+     */
+    @Override
+    public void close()
+    {
+        flush();
+        try {
+            if (stream != null)
+                stream.close();
+            else
+                channel.close();
+        } catch (IOException except) {
+            throw new IllegalStateException("Unable to close output", except);
+        }
+    }
+
+    /* Writes the contents of the buffer, and empties it for reuse. */
+    private void flushBuffer()
+    {
+        buffer.flip();
+        try {
+            if (stream != null)
+                stream.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+            else {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+        } catch (IOException except) {
+            throw new IllegalStateException("Unable to write output", except);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+}
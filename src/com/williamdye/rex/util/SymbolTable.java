@@ -0,0 +1,124 @@
+package com.williamdye.rex.util;
+
+/**
+ * Interns strings read into a character array, so that every occurrence of the same text is
+ * represented by a single <code>String</code> and a <code>String</code> is only created the first
+ * time its text is seen. Once the table holds its maximum number of symbols, new text is returned
+ * in a fresh <code>String</code> without being added, so the memory used by the table stays bounded.
+ * Symbol tables are not thread-safe.
+ * @author William Dye
+ */
+public class SymbolTable
+{
+
+    /** The default maximum number of symbols in a table. */
+    public static final int DEFAULT_MAX_SYMBOLS = 1 << 16;
+
+    private final int maxSymbols;
+    private String[] symbols;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * Creates a <code>SymbolTable</code> that holds at most <code>DEFAULT_MAX_SYMBOLS</code> symbols.
+     */
+    public SymbolTable()
+    {
+        this(DEFAULT_MAX_SYMBOLS);
+    }
+
+    /**
+     * Creates a <code>SymbolTable</code> that holds at most <code>maxSymbols</code> symbols.
+     * @param maxSymbols the maximum number of symbols to intern
+     */
+    public SymbolTable(int maxSymbols)
+    {
+        this.maxSymbols = maxSymbols;
+        symbols = new String[16];
+        hashes = new int[16];
+        size = 0;
+    }
+
+    /**
+     * Returns the interned string with the same text as <code>length</code> characters of <code>chars</code>,
+     * starting at <code>start</code>.
+     * @param chars the array containing the text
+     * @param start the index of the first character of the text
+     * @param length the number of characters in the text
+     * @return a string equal to the text, which is the same instance every time the text is interned
+     */
+    public String intern(char[] chars, int start, int length)
+    {
+        int hash = 0;
+        for (int i = start; i < start + length; i++)
+            hash = 31 * hash + chars[i];    /* the same as String.hashCode() */
+        int mask = symbols.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            String symbol = symbols[slot];
+            if (symbol == null)
+                break;
+            if (hashes[slot] == hash && matches(symbol, chars, start, length))
+                return symbol;
+        }
+        String symbol = new String(chars, start, length);
+        if (size < maxSymbols) {
+            if (2 * (size + 1) > symbols.length)
+                grow();
+            insert(symbol, hash);
+            size++;
+        }
+        return symbol;
+    }
+
+    /**
+     * Accessor for the number of symbols in the table.
+     * @return the number of interned strings
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /* Doubles the capacity of the table. */
+    private void grow()
+    {
+        String[] oldSymbols = symbols;
+        int[] oldHashes = hashes;
+        symbols = new String[2 * oldSymbols.length];
+        hashes = new int[2 * oldHashes.length];
+        for (int i = 0; i < oldSymbols.length; i++) {
+            if (oldSymbols[i] != null)
+                insert(oldSymbols[i], oldHashes[i]);
+        }
+    }
+
+    /* Places the symbol in the first free slot for its hash. */
+    private void insert(String symbol, int hash)
+    {
+        int mask = symbols.length - 1;
+        int slot = spread(hash) & mask;
+        while (symbols[slot] != null)
+            slot = (slot + 1) & mask;
+        symbols[slot] = symbol;
+        hashes[slot] = hash;
+    }
+
+    /* Mixes the high bits of the hash into the low bits, which select the slot. */
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    /* Returns true if the symbol has exactly the specified text. */
+    private static boolean matches(String symbol, char[] chars, int start, int length)
+    {
+        if (symbol.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (symbol.charAt(i) != chars[start + i])
+                return false;
+        }
+        return true;
+    }
+
+}
@@ -37,8 +37,33 @@ public class MiniREScannerTest
         assertTrue(output.startsWith("Invalid file path:"));
     }
 
+    @Test
+    public void invokingMainMinimizesTheDFAByDefault()
+    {
+        final String output = invokeMain("test/specs/spec_1.txt", "test/specs/input/spec_input_1.txt");
+        assertTrue(output.contains("Minimizing the DFA"));
+    }
+
+    @Test
+    public void invokingMainWithNoMinimizeOptionSkipsMinimization()
+    {
+        final String minimized = invokeMain("test/specs/spec_1.txt", "test/specs/input/spec_input_1.txt");
+        outputStream.reset();
+        final String output = invokeMain("--no-minimize", "test/specs/spec_1.txt", "test/specs/input/spec_input_1.txt");
+        assertFalse(output.contains("Minimizing the DFA"));
+        assertEquals(tokens(minimized), tokens(output));
+    }
+
+    @Test
+    public void invokingMainWithOnlyNoMinimizeOptionPrintsUsage()
+    {
+        final String output = invokeMain("--no-minimize", "foo.txt");
+        assertTrue(output.startsWith("Usage:"));
+    }
+
     private String invokeMain(String... args)
     {
+        System.setIn(new ByteArrayInputStream("\n\n".getBytes()));
         MiniREScanner.main(args);
         String output = outputStream.toString();
         if (output.startsWith("Welcome"))
@@ -46,4 +71,9 @@ public class MiniREScannerTest
         return output;
     }
 
+    private String tokens(String output)
+    {
+        return output.substring(output.indexOf("continue."));
+    }
+
 }
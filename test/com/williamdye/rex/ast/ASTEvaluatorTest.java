@@ -0,0 +1,325 @@
+package com.williamdye.rex.ast;
+
+import com.williamdye.rex.parser.*;
+import com.williamdye.rex.string.*;
+import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
+
+import org.junit.*;
+
+import java.io.*;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ASTEvaluatorTest
+{
+
+    private File input, other, script;
+    private ExecutorService pool;
+
+    @Before
+    public void createFiles() throws IOException
+    {
+        input = File.createTempFile("rex", ".txt");
+        other = File.createTempFile("rex", ".txt");
+        script = File.createTempFile("rex", ".minire");
+        write(input, "singing king\nring Bob\r\nabb babb\n");
+        write(other, "thing 12\nking\n");
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void deleteFiles()
+    {
+        pool.shutdownNow();
+        input.delete();
+        other.delete();
+        script.delete();
+    }
+
+    @Test
+    public void everyDependentStatementIsEvaluatedOnce() throws ParseException, IOException
+    {
+        StringBuilder text = new StringBuilder("begin\na0 = find '([a-z])*ing' in \"" + input.getPath() + "\";\n");
+        for (int i = 0; i < 2000; i++)
+            text.append("c").append(i).append(" = #a0;\nprint(a0);\n");
+        text.append("end\n");
+        write(script, text.toString());
+        String sequential = evaluate(null);
+        for (int i = 0; i < 5; i++)
+            assertEquals(sequential, evaluate(pool));
+    }
+
+    @Test
+    public void concurrentEvaluationPrintsInProgramOrder() throws ParseException, IOException
+    {
+        write(script, "begin\n"
+                + "a = find '([a-z])*ing' in \"" + input.getPath() + "\";\n"
+                + "b = find '([0-9])+' in \"" + other.getPath() + "\";\n"
+                + "print(a, b);\n"
+                + "replace '([a-z])*ing' with \"X\" in \"" + input.getPath() + "\" >! \"" + input.getPath() + "\";\n"
+                + "c = find '([a-z])*ing' in \"" + input.getPath() + "\" union find '([a-z])*ing' in \""
+                + other.getPath() + "\";\n"
+                + "n = #c;\n"
+                + "print(n, c, a);\n"
+                + "end\n");
+        String text = read(input);
+        String sequential = evaluate(null);
+        write(input, text);
+        assertEquals(sequential, evaluate(pool));
+    }
+
+    @Test
+    public void findsOfTheSameFileInABlockShareOnePass() throws ParseException, IOException
+    {
+        write(script, "begin\n"
+                + "a = find '([a-z])*ing' in \"" + input.getPath() + "\";\n"
+                + "b = find '[A-Z]([a-z])*' in \"" + input.getPath() + "\";\n"
+                + "c = find '(a|b)*abb' in \"" + input.getPath() + "\";\n"
+                + "print(a, b, c);\n"
+                + "replace '([a-z])*ing' with \"X\" in \"" + input.getPath() + "\" >! \"" + other.getPath() + "\";\n"
+                + "d = find '[A-Z]([a-z])*' in \"" + other.getPath() + "\";\n"
+                + "e = find '(a|b)*abb' in \"" + other.getPath() + "\";\n"
+                + "print(d, e);\n"
+                + "end\n");
+        long before = MatchFinder.getPasses();
+        String sequential = evaluate(null);
+        assertEquals(2, MatchFinder.getPasses() - before);
+        before = MatchFinder.getPasses();
+        assertEquals(sequential, evaluate(pool));
+        assertEquals(5, MatchFinder.getPasses() - before);
+    }
+
+    @Test
+    public void whatEachStatementPrintsIsFlushedBeforeTheNextOne() throws ParseException, IOException
+    {
+        write(script, "begin\n"
+                + "a = find '([a-z])*ing' in \"" + input.getPath() + "\";\n"
+                + "print(a);\n"
+                + "b = find '([0-9])+' in \"" + other.getPath() + "\";\n"
+                + "print(b);\n"
+                + "end\n");
+        List<String> sequential = writes(null);
+        assertEquals(2, sequential.size());
+        assertEquals(sequential, writes(pool));
+    }
+
+    @Test
+    public void parallelOperandsPrintWhatSequentialOperandsPrint() throws ParseException, IOException
+    {
+        String missing = input.getPath() + ".missing";
+        String ing = "find '([a-z])*ing' in \"" + input.getPath() + "\"";
+        String word = "find '([a-z])+' in \"" + other.getPath() + "\"";
+        write(script, "begin\n"
+                + "a = " + ing + " union " + word + " inters " + ing + ";\n"
+                + "b = " + word + " diff find '([a-z])*ing' in \"" + missing + "\" union find '(ab' in \""
+                + input.getPath() + "\";\n"
+                + "print(a, b);\n"
+                + "c = " + ing + " union " + ing + " union " + ing + ";\n"
+                + "print(c, a);\n"
+                + "print(" + word + " inters " + ing + ");\n"
+                + "end\n");
+        ForkJoinPool operands = new ForkJoinPool(4);
+        try {
+            String sequential = evaluate(null, null);
+            assertTrue(sequential, sequential.contains("does not exist"));
+            for (int i = 0; i < 5; i++) {
+                assertEquals(sequential, evaluate(null, operands));
+                assertEquals(sequential, evaluate(pool, operands));
+            }
+        } finally {
+            operands.shutdown();
+        }
+    }
+
+    @Test
+    public void unionMergesIntoTheFirstEqualStringAndAppendsTheRest()
+    {
+        List<MiniREString> a = left(), b = right();
+        List<String> union = describe(ASTEvaluator.unionOp(a, b));
+        assertEquals(Arrays.asList("x[f:1:0 g:2:0]", "y[f:1:2 g:1:0 g:3:0]", "x[f:2:0]", "z[f:3:0]", "w[g:1:1]",
+                "v[g:4:0]"), union);
+        assertEquals(describe(referenceUnion(copy(a), copy(b))), union);
+        assertEquals(describe(left()), describe(a));
+        assertEquals(describe(right()), describe(b));
+    }
+
+    @Test
+    public void intersectionKeepsTheOrderAndDuplicatesOfItsFirstOperand()
+    {
+        List<MiniREString> a = left(), b = right();
+        List<String> intersection = describe(ASTEvaluator.intersOp(a, b));
+        assertEquals(Arrays.asList("x[f:1:0 g:2:0]", "y[f:1:2 g:1:0]", "x[f:2:0 g:2:0]"), intersection);
+        assertEquals(describe(referenceIntersection(copy(a), copy(b))), intersection);
+        assertEquals(Arrays.asList("y[g:1:0 f:1:2]", "x[g:2:0 f:1:0]", "y[g:3:0 f:1:2]"),
+                describe(ASTEvaluator.intersOp(b, a)));
+        assertEquals(describe(referenceIntersection(copy(b), copy(a))), describe(ASTEvaluator.intersOp(b, a)));
+        assertEquals(describe(left()), describe(a));
+        assertEquals(describe(right()), describe(b));
+    }
+
+    @Test
+    public void differenceKeepsTheOrderAndDuplicatesOfItsFirstOperand()
+    {
+        List<MiniREString> a = left(), b = right();
+        assertEquals(Arrays.asList("z[f:3:0]"), describe(ASTEvaluator.diffOp(a, b)));
+        assertEquals(Arrays.asList("w[g:1:1]", "v[g:4:0]"), describe(ASTEvaluator.diffOp(b, a)));
+        a.add(string("w", "f", 5, 0));
+        a.add(string("w", "f", 6, 0));
+        assertEquals(describe(referenceDifference(copy(a), copy(b))), describe(ASTEvaluator.diffOp(a, b)));
+        assertEquals(Collections.<String>emptyList(), describe(ASTEvaluator.diffOp(a, a)));
+    }
+
+    /* Returns the first operand of the set operation tests, which repeats the string "x". */
+    private static List<MiniREString> left()
+    {
+        return new ArrayList<MiniREString>(Arrays.asList(string("x", "f", 1, 0), string("y", "f", 1, 2),
+                string("x", "f", 2, 0), string("z", "f", 3, 0)));
+    }
+
+    /* Returns the second operand of the set operation tests, which repeats the string "y". */
+    private static List<MiniREString> right()
+    {
+        return new ArrayList<MiniREString>(Arrays.asList(string("y", "g", 1, 0), string("w", "g", 1, 1),
+                string("x", "g", 2, 0), string("y", "g", 3, 0), string("v", "g", 4, 0)));
+    }
+
+    /* Returns a string with a single match. */
+    private static MiniREString string(String text, String file, int line, int index)
+    {
+        return new MiniREStringImpl(text, new MetadataImpl(file, line, index));
+    }
+
+    /* Returns a copy of each string in the list, with the same metadata. */
+    private static List<MiniREString> copy(List<MiniREString> list)
+    {
+        List<MiniREString> copy = new ArrayList<MiniREString>();
+        for (MiniREString s : list) {
+            MiniREString t = new MiniREStringImpl(s.getString());
+            t.addAllMetadata(s.getAllMetadata());
+            copy.add(t);
+        }
+        return copy;
+    }
+
+    /* Returns each string of the list (as "text[file:line:index ...]"), with its matches in order. */
+    private static List<String> describe(List<MiniREString> list)
+    {
+        List<String> strings = new ArrayList<String>();
+        for (MiniREString s : list) {
+            StringBuilder text = new StringBuilder(s.getString()).append('[');
+            for (Metadata meta : s.getAllMetadata()) {
+                for (int i = 0; i < meta.getMatchCount(); i++) {
+                    if (text.charAt(text.length() - 1) != '[')
+                        text.append(' ');
+                    text.append(meta.getFile()).append(':').append(meta.getLine(i)).append(':').append(meta.getIndex(i));
+                }
+            }
+            strings.add(text.append(']').toString());
+        }
+        return strings;
+    }
+
+    /* The original intersection, which added metadata to the strings of a in place. */
+    private static List<MiniREString> referenceIntersection(List<MiniREString> a, List<MiniREString> b)
+    {
+        List<MiniREString> intersection = new ArrayList<MiniREString>();
+        for (MiniREString s : a) {
+            if (b.contains(s)) {
+                s.addAllMetadata(b.get(b.indexOf(s)).getAllMetadata());
+                intersection.add(s);
+            }
+        }
+        return intersection;
+    }
+
+    /* The original difference. */
+    private static List<MiniREString> referenceDifference(List<MiniREString> a, List<MiniREString> b)
+    {
+        List<MiniREString> difference = new ArrayList<MiniREString>();
+        for (MiniREString s : a) {
+            if (!b.contains(s))
+                difference.add(s);
+        }
+        return difference;
+    }
+
+    /* The original union, which added metadata to the strings of a in place. */
+    private static List<MiniREString> referenceUnion(List<MiniREString> a, List<MiniREString> b)
+    {
+        List<MiniREString> union = new ArrayList<MiniREString>(a);
+        for (MiniREString s : b) {
+            if (!union.contains(s))
+                union.add(s);
+            else
+                union.get(union.indexOf(s)).addAllMetadata(s.getAllMetadata());
+        }
+        return union;
+    }
+
+    /* Evaluates the script, on the executor if there is one, and returns each write of what it printed. */
+    private List<String> writes(ExecutorService executor) throws ParseException, IOException
+    {
+        final List<String> writes = new ArrayList<String>();
+        ASTEvaluator evaluator = new ASTEvaluator(new MiniREParserImpl(new MiniRETokenizer(script)).parse());
+        evaluator.setExecutor(executor);
+        evaluator.setOutput(new OutputBuffer(new OutputStream() {
+            @Override
+            public void write(int b)
+            {
+                write(new byte[] {(byte)b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length)
+            {
+                writes.add(new String(bytes, offset, length));
+            }
+        }));
+        evaluator.evaluate();
+        return writes;
+    }
+
+    /* Evaluates the script, on the executor if there is one, and returns what it printed. */
+    private String evaluate(ExecutorService executor) throws ParseException, IOException
+    {
+        return evaluate(executor, MatchFinder.getPool());
+    }
+
+    /* Evaluates the script, on the executor if there is one, with the operands of set operations evaluated
+     * on the pool (or in order, if there is none), and returns what it printed. */
+    private String evaluate(ExecutorService executor, ForkJoinPool operands) throws ParseException, IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ASTEvaluator evaluator = new ASTEvaluator(new MiniREParserImpl(new MiniRETokenizer(script)).parse());
+        evaluator.setExecutor(executor);
+        evaluator.setOperandPool(operands);
+        evaluator.setOutput(new OutputBuffer(bytes));
+        evaluator.evaluate();
+        return bytes.toString("ISO-8859-1");
+    }
+
+    /* Writes the text to the file. */
+    private static void write(File file, String text) throws IOException
+    {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1")) {
+            writer.write(text);
+        }
+    }
+
+    /* Returns the contents of the file. */
+    private static String read(File file) throws IOException
+    {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), "ISO-8859-1")) {
+            StringBuilder text = new StringBuilder();
+            char[] block = new char[1024];
+            for (int read = reader.read(block); read > 0; read = reader.read(block))
+                text.append(block, 0, read);
+            return text.toString();
+        }
+    }
+
+}
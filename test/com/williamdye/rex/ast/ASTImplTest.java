@@ -0,0 +1,127 @@
+package com.williamdye.rex.ast;
+
+import com.williamdye.rex.parser.*;
+import com.williamdye.rex.tokens.*;
+
+import org.junit.*;
+
+import java.io.*;
+import java.text.ParseException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ASTImplTest
+{
+
+    private File script;
+
+    @Before
+    public void createFile() throws IOException
+    {
+        script = File.createTempFile("rex", ".minire");
+    }
+
+    @After
+    public void deleteFile()
+    {
+        script.delete();
+    }
+
+    @Test
+    public void anAssignmentThatIsNeverReadIsDead() throws ParseException, IOException
+    {
+        assertEquals(Arrays.asList(1), dead(
+                "a = find 'x' in \"f.txt\";",
+                "b = find 'y' in \"f.txt\";",
+                "print(b);"));
+    }
+
+    @Test
+    public void everyKindOfReadKeepsAnAssignmentLive() throws ParseException, IOException
+    {
+        assertEquals(Collections.<Integer>emptyList(), dead(
+                "a = find 'x' in \"f.txt\";",
+                "b = find 'y' in \"f.txt\";",
+                "c = find 'z' in \"f.txt\";",
+                "m = maxfreqstring(a);",
+                "print(m);",
+                "n = #b;",
+                "print(c);"));
+    }
+
+    @Test
+    public void countAssignmentsAreNeverDead() throws ParseException, IOException
+    {
+        assertEquals(Collections.<Integer>emptyList(), dead(
+                "n = #find 'x' in \"f.txt\";",
+                "a = find 'y' in \"f.txt\";",
+                "m = #a;"));
+    }
+
+    @Test
+    public void anAssignmentReadOnlyByADeadAssignmentIsDead() throws ParseException, IOException
+    {
+        assertEquals(Arrays.asList(1, 2), dead(
+                "a = find 'x' in \"f.txt\";",
+                "m = maxfreqstring(a);",
+                "print(find 'y' in \"f.txt\" union find 'z' in \"f.txt\");"));
+    }
+
+    @Test
+    public void anAssignmentOverwrittenBeforeItIsReadIsDead() throws ParseException, IOException
+    {
+        assertEquals(Arrays.asList(1), dead(
+                "a = find 'x' in \"f.txt\";",
+                "a = find 'y' in \"f.txt\";",
+                "print(a);"));
+    }
+
+    @Test
+    public void aReassignmentAfterTheLastReadIsDead() throws ParseException, IOException
+    {
+        assertEquals(Arrays.asList(3), dead(
+                "a = find 'x' in \"f.txt\";",
+                "print(a);",
+                "a = find 'y' in \"f.txt\";"));
+    }
+
+    @Test
+    public void eachAssignmentIsLiveOnlyUntilItIsOverwritten() throws ParseException, IOException
+    {
+        assertEquals(Arrays.asList(1), dead(
+                "a = find 'x' in \"f.txt\";",
+                "a = find 'y' in \"f.txt\" union find 'z' in \"f.txt\";",
+                "b = maxfreqstring(a);",
+                "a = find 'w' in \"f.txt\";",
+                "print(b, a);"));
+    }
+
+    /* Parses the statements as a script, and returns the positions (1-indexed, in order) of the statements
+     * that are dead assignments. */
+    private List<Integer> dead(String... statements) throws ParseException, IOException
+    {
+        StringBuilder text = new StringBuilder("begin\n");
+        for (String statement : statements)
+            text.append(statement).append('\n');
+        text.append("end\n");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(script), "ISO-8859-1")) {
+            writer.write(text.toString());
+        }
+
+        AST tree = new MiniREParserImpl(new MiniRETokenizer(script)).parse();
+        Set<ASTNode> dead = tree.getDeadAssignments();
+        List<Integer> positions = new ArrayList<Integer>();
+        int position = 0;
+        for (ASTNode node = tree.getStartNode(); node != null; node = node.getNext()) {
+            if (ASTNodeType.BEGIN == node.getNodeType() || ASTNodeType.END == node.getNodeType())
+                continue;
+            position++;
+            if (dead.contains(node))
+                positions.add(position);
+        }
+        assertEquals(position, statements.length);
+        return positions;
+    }
+
+}
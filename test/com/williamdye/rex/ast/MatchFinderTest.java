@@ -0,0 +1,193 @@
+package com.williamdye.rex.ast;
+
+import com.williamdye.rex.automata.*;
+import com.williamdye.rex.parser.*;
+import com.williamdye.rex.scanner.*;
+import com.williamdye.rex.string.*;
+import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
+
+import org.junit.*;
+
+import java.io.*;
+import java.text.ParseException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MatchFinderTest
+{
+
+    private static final String[] REGEXES = { "([a-z])*ing", "[A-Z]([a-z])*", "([0-9])+", "(a|b)*abb" };
+
+    private File file, other;
+
+    @Before
+    public void createFiles() throws IOException
+    {
+        file = File.createTempFile("rex", ".txt");
+        other = File.createTempFile("rex", ".txt");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("Line ").append(i).append(": singing king abb babb ring Bob");
+            text.append(i % 3 == 0 ? "\r\n" : (i % 7 == 0 ? "\r" : "\n"));
+            if (i % 50 == 0)
+                text.append("\n");      /* an empty line */
+        }
+        text.append("a final line without a separator, ending in 99");
+        write(file, text.toString());
+        write(other, "Alice abb 12 thing\nking 7 Bob\n");
+    }
+
+    @After
+    public void deleteFiles()
+    {
+        file.delete();
+        other.delete();
+    }
+
+    @Test
+    public void findReturnsTheMatchesOfASequentialScan() throws ParseException
+    {
+        for (String regex : REGEXES)
+            assertEquals(regex, baseline(regex, file), flatten(MatchFinder.find(recognizer(regex), file, file.getPath())));
+    }
+
+    @Test
+    public void chunkedFindReturnsTheMatchesOfASequentialScan() throws ParseException, IOException
+    {
+        for (String regex : REGEXES) {
+            List<String> expected = baseline(regex, file);
+            for (int numChunks = 2; numChunks <= 40; numChunks++)
+                assertEquals(regex + " in " + numChunks + " chunks", expected,
+                        flatten(MatchFinder.find(recognizer(regex), file, file.getPath(), numChunks)));
+        }
+    }
+
+    @Test
+    public void chunkedFindSplitsAFewLinesIntoFewerChunks() throws ParseException, IOException
+    {
+        String regex = REGEXES[0];
+        assertEquals(baseline(regex, other), flatten(MatchFinder.find(recognizer(regex), other, other.getPath(), 1000)));
+    }
+
+    @Test
+    public void chunkedCountReturnsTheNumberOfMatches() throws ParseException, IOException
+    {
+        for (String regex : REGEXES) {
+            int expected = baseline(regex, file).size();
+            assertEquals(expected, MatchFinder.count(recognizer(regex), file));
+            for (int numChunks = 2; numChunks <= 40; numChunks += 7)
+                assertEquals(expected, MatchFinder.count(recognizer(regex), file, numChunks));
+        }
+    }
+
+    @Test
+    public void singlePassFindReturnsTheMatchesOfEachRecognizer() throws ParseException
+    {
+        List<Recognizer> recognizers = new ArrayList<Recognizer>();
+        for (String regex : REGEXES)
+            recognizers.add(recognizer(regex));
+        for (long chunkSize : new long[] { 1, 100, 4096, MappedCharBuffer.WINDOW_SIZE }) {
+            List<Map<String, MiniREString>> results = MatchFinder.find(recognizers, file, file.getPath(), chunkSize);
+            assertEquals(REGEXES.length, results.size());
+            for (int i = 0; i < REGEXES.length; i++)
+                assertEquals(REGEXES[i] + " in chunks of " + chunkSize, baseline(REGEXES[i], file), flatten(results.get(i)));
+        }
+    }
+
+    @Test
+    public void multiFileFindKeepsOneMetadataPerFile() throws ParseException
+    {
+        Map<String, MiniREString> matches = MatchFinder.find(recognizer("[A-Z]([a-z])*"), Arrays.asList(other, file),
+                Arrays.asList(other.getPath(), file.getPath()));
+        List<String> expected = new ArrayList<String>(baseline("[A-Z]([a-z])*", other));
+        assertEquals("Alice", matches.keySet().iterator().next());
+        List<Metadata> bob = matches.get("Bob").getAllMetadata();
+        assertEquals(2, bob.size());
+        assertEquals(other.getPath(), bob.get(0).getFile());
+        assertEquals(file.getPath(), bob.get(1).getFile());
+        assertEquals(1, bob.get(0).getMatchCount());
+        assertEquals(500, bob.get(1).getMatchCount());
+        assertTrue(flatten(matches).containsAll(expected));
+    }
+
+    @Test
+    public void streamPassesEveryMatchInOrder() throws ParseException
+    {
+        final List<String> streamed = new ArrayList<String>();
+        MatchFinder.stream(recognizer("([0-9])+"), Collections.singletonList(file), new MatchFinder.MatchHandler() {
+            @Override
+            public void match(String string, int line, int index)
+            {
+                streamed.add(string + "@" + line + ":" + index);
+            }
+        });
+        List<String> expected = new ArrayList<String>();
+        for (String match : walk("([0-9])+", file))
+            expected.add(match);
+        assertEquals(expected, streamed);
+    }
+
+    /* Returns the recognizer that find() uses for the regex. */
+    private static Recognizer recognizer(String regex) throws ParseException
+    {
+        return RecognizerCache.getSharedCache().get(regex);
+    }
+
+    /* Returns the matches (as "text@line:index") of the regex found by a single walker over the DFA that the
+     * subset construction builds, in the order in which the original find() listed them. */
+    private static List<String> baseline(String regex, File file) throws ParseException
+    {
+        Map<String, List<String>> grouped = new LinkedHashMap<String, List<String>>();
+        for (String match : walk(regex, file)) {
+            String string = match.substring(0, match.lastIndexOf('@'));
+            if (!grouped.containsKey(string))
+                grouped.put(string, new ArrayList<String>());
+            grouped.get(string).add(match);
+        }
+        List<String> matches = new ArrayList<String>();
+        for (List<String> group : grouped.values())
+            matches.addAll(group);
+        return matches;
+    }
+
+    /* Returns every match (as "text@line:index") of the subset-construction DFA for the regex, in file order. */
+    private static List<String> walk(String regex, File file) throws ParseException
+    {
+        NFA nfa = new RecursiveDescentParserImpl(new TokenizerImpl(regex), new LinkedHashSet<NFA>()).parse();
+        Map<String, Set<State>> map = new LinkedHashMap<String, Set<State>>();
+        map.put(MiniRETableWalkerImpl.MATCH_TOKEN, nfa.getAcceptingStates());
+        MiniRETableWalkerImpl walker = new MiniRETableWalkerImpl(NFAToDFAConverter.convert(nfa, map), file);
+        List<String> matches = new ArrayList<String>();
+        while (walker.hasNextToken()) {
+            SourceToken token = walker.getNextToken();
+            if (MiniRETableWalkerImpl.MATCH_TOKEN.equals(token.getTokenType()))
+                matches.add(token.getTokenString() + "@" + walker.getBufferLineNumber() + ":"
+                        + (walker.getBufferIndex() - token.getTokenString().length()));
+        }
+        return matches;
+    }
+
+    /* Returns every match (as "text@line:index") in the results of a find. */
+    private static List<String> flatten(Map<String, MiniREString> results)
+    {
+        List<String> matches = new ArrayList<String>();
+        for (MiniREString s : results.values()) {
+            for (Metadata meta : s.getAllMetadata()) {
+                for (int i = 0; i < meta.getMatchCount(); i++)
+                    matches.add(s.getString() + "@" + meta.getLine(i) + ":" + meta.getIndex(i));
+            }
+        }
+        return matches;
+    }
+
+    /* Writes the text to the file. */
+    private static void write(File file, String text) throws IOException
+    {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1")) {
+            writer.write(text);
+        }
+    }
+
+}
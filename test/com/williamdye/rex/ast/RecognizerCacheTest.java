@@ -0,0 +1,61 @@
+package com.williamdye.rex.ast;
+
+import com.williamdye.rex.automata.*;
+
+import org.junit.*;
+
+import java.text.ParseException;
+
+import static org.junit.Assert.*;
+
+public class RecognizerCacheTest
+{
+
+    @Test
+    public void aValidRegexIsCompiledOnce() throws ParseException
+    {
+        RecognizerCache cache = new RecognizerCache(4);
+        Recognizer recognizer = cache.get("([a-z])*ing");
+        assertSame(recognizer, cache.get("([a-z])*ing"));
+        assertTrue(cache.isValid("([a-z])*ing"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void anInvalidRegexIsParsedOnce()
+    {
+        RecognizerCache cache = new RecognizerCache(4);
+        String message = null;
+        for (int i = 0; i < 3; i++) {
+            try {
+                cache.get("(ab");
+                fail("expected the regex to be rejected");
+            } catch (ParseException except) {
+                if (message == null)
+                    message = except.getMessage();
+                assertEquals(message, except.getMessage());
+            }
+        }
+        assertFalse(cache.isValid("(ab"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(3, cache.getHits());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void theLeastRecentlyUsedRegexIsEvicted() throws ParseException
+    {
+        RecognizerCache cache = new RecognizerCache(2);
+        Recognizer a = cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get("a"));
+        cache.get("b");
+        assertEquals(4, cache.getMisses());
+    }
+
+}
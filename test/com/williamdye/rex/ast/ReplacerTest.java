@@ -0,0 +1,141 @@
+package com.williamdye.rex.ast;
+
+import com.williamdye.rex.automata.*;
+
+import org.junit.*;
+
+import java.io.*;
+import java.text.ParseException;
+
+import static org.junit.Assert.*;
+
+public class ReplacerTest
+{
+
+    private File source, dest;
+
+    @Before
+    public void createFiles() throws IOException
+    {
+        source = File.createTempFile("rex", ".txt");
+        dest = File.createTempFile("rex", ".txt");
+        dest.delete();
+    }
+
+    @After
+    public void deleteFiles()
+    {
+        source.delete();
+        dest.delete();
+    }
+
+    @Test
+    public void replaceCopiesEverythingButTheMatchesUnchanged() throws ParseException, IOException
+    {
+        write(source, "sing ring\r\nking\rno match\n\nthing");
+        assertEquals(4, Replacer.replace(recognizer("([a-z])*ing"), source, dest, "X"));
+        assertEquals("X X\r\nX\rno match\n\nX", read(dest));
+    }
+
+    @Test
+    public void replaceKeepsTheFinalSeparator() throws ParseException, IOException
+    {
+        write(source, "one two\n");
+        assertEquals(1, Replacer.replace(recognizer("two"), source, dest, "2"));
+        assertEquals("one 2\n", read(dest));
+    }
+
+    @Test
+    public void replaceWithoutMatchesCopiesTheFile() throws ParseException, IOException
+    {
+        write(source, "abc\r\ndef");
+        assertEquals(0, Replacer.replace(recognizer("xyz"), source, dest, "X"));
+        assertEquals("abc\r\ndef", read(dest));
+    }
+
+    @Test
+    public void replaceInPlaceRewritesTheSource() throws ParseException, IOException
+    {
+        write(source, "a1b22\r\nc333");
+        assertEquals(3, Replacer.replace(recognizer("([0-9])+"), source, source, "#"));
+        assertEquals("a#b#\r\nc#", read(source));
+    }
+
+    @Test
+    public void recursiveReplaceReachesAFixedPointOnEachLine() throws ParseException, IOException
+    {
+        write(source, "xbbb y\r\nnone\rxb xb\n");
+        assertEquals(5, Replacer.replaceRecursively(recognizer("xb"), source, dest, "x", 10));
+        assertEquals("x y\r\nnone\rx x\n", read(dest));
+    }
+
+    @Test
+    public void recursiveReplaceDetectsARepeatingLine() throws ParseException, IOException
+    {
+        write(source, "fine\nxa\n");
+        assertFails(recognizer("a"), "a", 100, "Line 2 repeats itself");
+    }
+
+    @Test
+    public void recursiveReplaceDetectsAGrowingLine() throws ParseException, IOException
+    {
+        write(source, "a\n");
+        assertFails(recognizer("a"), "aa", 100, "Line 1 grows beyond " + Replacer.MAX_LINE_LENGTH);
+    }
+
+    @Test
+    public void recursiveReplaceStopsAfterTheMaximumIterations() throws ParseException, IOException
+    {
+        write(source, "xbbbbb\n");
+        assertFails(recognizer("xb"), "x", 3, "Line 1 still has matches after 3 iterations");
+    }
+
+    /* Asserts that a recursive replacement fails with a message starting with the prefix, without writing
+     * either the destination or (in place) the source. */
+    private void assertFails(Recognizer recognizer, String replacement, int maxIterations, String prefix)
+            throws IOException
+    {
+        String text = read(source);
+        try {
+            Replacer.replaceRecursively(recognizer, source, dest, replacement, maxIterations);
+            fail("expected the replacement to fail");
+        } catch (IllegalStateException except) {
+            assertTrue(except.getMessage(), except.getMessage().startsWith(prefix));
+        }
+        assertFalse(dest.exists());
+        try {
+            Replacer.replaceRecursively(recognizer, source, source, replacement, maxIterations);
+            fail("expected the replacement to fail");
+        } catch (IllegalStateException except) {
+            assertTrue(except.getMessage(), except.getMessage().startsWith(prefix));
+        }
+        assertEquals(text, read(source));
+    }
+
+    /* Returns the recognizer that the evaluator uses for the regex. */
+    private static Recognizer recognizer(String regex) throws ParseException
+    {
+        return RecognizerCache.getSharedCache().get(regex);
+    }
+
+    /* Writes the text to the file. */
+    private static void write(File file, String text) throws IOException
+    {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1")) {
+            writer.write(text);
+        }
+    }
+
+    /* Returns the contents of the file. */
+    private static String read(File file) throws IOException
+    {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), "ISO-8859-1")) {
+            StringBuilder text = new StringBuilder();
+            char[] block = new char[1024];
+            for (int read = reader.read(block); read > 0; read = reader.read(block))
+                text.append(block, 0, read);
+            return text.toString();
+        }
+    }
+
+}
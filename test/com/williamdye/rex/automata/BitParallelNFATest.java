@@ -0,0 +1,104 @@
+package com.williamdye.rex.automata;
+
+import com.williamdye.rex.parser.*;
+import com.williamdye.rex.scanner.*;
+import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
+
+import org.junit.*;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BitParallelNFATest
+{
+
+    private static final String[] REGEXES = {
+        "(a|b)*abb",
+        "([a-z])*ing",
+        "[A-Z]([a-z])*",
+        "([0-9])+(\\.([0-9])+|)",
+        "(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)",
+        "if|iff|([a-z])+"
+    };
+
+    /* 42 character classes and 43 positions, whose tables would not fit if looked up eight positions at a time */
+    private static final String LONG_REGEX = "abcdefghijklmnopqrstuvwxyz(A|B|C|D|E|F|G|H|I|J|K|L|M|N|O|P)*";
+
+    private static final String INPUT = "babb abb aabba singing ing king Ring\n"
+            + "Alice and Bob 3.14 2.0.1 42. abbbbbaaaaab bababababa\r\n"
+            + "\n"
+            + "if iff ifff abaaaa bbbbbbbbbabbbbb x abcdefghijklmnopqrstuvwxyz abcdefghijklmnopqrstuvwxyzABBA abcdefghijklmno";
+
+    @Test
+    public void bitParallelNFAFindsTheSameMatchesAsTheConvertedDFA() throws ParseException
+    {
+        for (String regex : REGEXES)
+            assertEquals(regex, matches(convert(regex), INPUT), matches(new BitParallelNFA(new IndexedNFA(parse(regex))), INPUT));
+    }
+
+    @Test
+    public void bitParallelNFAWithNarrowTablesFindsTheSameMatches() throws ParseException
+    {
+        IndexedNFA indexed = new IndexedNFA(parse(LONG_REGEX));
+        assertTrue(BitParallelNFA.getNumPositions(indexed) > 32);
+        assertTrue(BitParallelNFA.getNumPositions(indexed) <= BitParallelNFA.MAX_POSITIONS);
+        List<String> expected = matches(convert(LONG_REGEX), INPUT);
+        assertEquals(2, expected.size());
+        assertEquals(expected, matches(new BitParallelNFA(indexed), INPUT));
+    }
+
+    @Test
+    public void bitParallelNFATablesAreBounded() throws ParseException
+    {
+        BitParallelNFA nfa = new BitParallelNFA(new IndexedNFA(parse(LONG_REGEX)));
+        assertTrue(nfa.getTableSize() <= BitParallelNFA.MAX_TABLE_ENTRIES);
+    }
+
+    @Test
+    public void smallPatternsUseFullTables() throws ParseException
+    {
+        /* the six positions fit in one chunk of eight, looked up in one table for each of the two classes */
+        BitParallelNFA nfa = new BitParallelNFA(new IndexedNFA(parse("ab|ba")));
+        assertEquals(2 * 256, nfa.getTableSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyPositionsAreRejected() throws ParseException
+    {
+        new BitParallelNFA(new IndexedNFA(parse(LONG_REGEX + LONG_REGEX + LONG_REGEX)));
+    }
+
+    /* Parses a MiniRE regex into an NFA. */
+    private static NFA parse(String regex) throws ParseException
+    {
+        return new RecursiveDescentParserImpl(new TokenizerImpl(regex), new LinkedHashSet<NFA>()).parse();
+    }
+
+    /* Returns the DFA that the subset construction builds for the regex, as find() originally used it. */
+    private static CompiledDFA convert(String regex) throws ParseException
+    {
+        NFA nfa = parse(regex);
+        Map<String, Set<State>> map = new LinkedHashMap<String, Set<State>>();
+        map.put(MiniRETableWalkerImpl.MATCH_TOKEN, nfa.getAcceptingStates());
+        return new CompiledDFAImpl(NFAToDFAConverter.convert(nfa, map));
+    }
+
+    /* Returns every match (as "line:index:text") that the MiniRE table walker finds in the input. */
+    private static List<String> matches(Recognizer recognizer, String input)
+    {
+        MiniRETableWalkerImpl walker = new MiniRETableWalkerImpl(recognizer, new ByteBufferInput(ByteBuffer.wrap(input.getBytes())));
+        List<String> matches = new ArrayList<String>();
+        while (walker.hasNextToken()) {
+            SourceToken token = walker.getNextToken();
+            if (MiniRETableWalkerImpl.MATCH_TOKEN.equals(token.getTokenType()))
+                matches.add(walker.getBufferLineNumber() + ":" + (walker.getBufferIndex() - token.getTokenString().length())
+                        + ":" + token.getTokenString());
+        }
+        return matches;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.williamdye.rex.automata;
+
+import com.williamdye.rex.parser.*;
+import com.williamdye.rex.scanner.*;
+import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
+
+import org.junit.*;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DFAMinimizerTest
+{
+
+    private static final String[][] TOKEN_CLASSES = {
+        { "$KEYWORD", "(if|then|else)" },
+        { "$ID", "[a-z]([a-z]|[0-9])*" },
+        { "$NUMBER", "([0-9])+(\\.([0-9])+|)" },
+        { "$ABB", "(a|b)*abb" },
+        { "$OP", "\\+|\\-|\\*|\\+\\+|\\-\\-" }
+    };
+
+    private static final String INPUT = "if x1 then 3.14 else abb aabb babb ab 12. ++ -- + x++ then2 elsewhere\n"
+            + "bbabb 007 a.b ?? iff 1.2.3\n\nz9 * -";
+
+    @Test
+    public void minimizedDFAHasNoMoreStates() throws ParseException
+    {
+        Map<String, Set<State>> stateMap = new LinkedHashMap<String, Set<State>>();
+        DFA dfa = convert(stateMap, TOKEN_CLASSES);
+        int before = dfa.getNumStates();
+        assertTrue(DFAMinimizer.minimize(dfa, stateMap).getNumStates() < before);
+    }
+
+    @Test
+    public void minimizedDFAMergesEquivalentStates() throws ParseException
+    {
+        Map<String, Set<State>> stateMap = new LinkedHashMap<String, Set<State>>();
+        DFA dfa = convert(stateMap, new String[] { "$ABB", "(a|b)*abb" });
+        DFA minimal = DFAMinimizer.minimize(dfa, stateMap);
+        assertEquals(4, minimal.getNumStates());
+    }
+
+    @Test
+    public void minimizedDFAScansTheSameTokens() throws ParseException
+    {
+        Map<String, Set<State>> stateMap = new LinkedHashMap<String, Set<State>>();
+        DFA dfa = convert(stateMap, TOKEN_CLASSES);
+        List<String> expected = scan(new CompiledDFAImpl(dfa));
+        DFA minimal = DFAMinimizer.minimize(dfa, stateMap);
+        assertEquals(expected, scan(new CompiledDFAImpl(minimal)));
+        assertEquals(dfa.getTokenClasses(), minimal.getTokenClasses());
+    }
+
+    @Test
+    public void minimizedDFAKeepsTokenClassesApart() throws ParseException
+    {
+        Map<String, Set<State>> stateMap = new LinkedHashMap<String, Set<State>>();
+        DFA minimal = DFAMinimizer.minimize(convert(stateMap, new String[] { "$A", "x" }, new String[] { "$B", "y" }), stateMap);
+        assertEquals(Arrays.asList("$A:x", "$B:y", "$A:x"), scan(new CompiledDFAImpl(minimal), "x y x"));
+    }
+
+    /* Builds the DFA for the token classes as the scanner does, filling in the mapping of token classes to states. */
+    private static DFA convert(Map<String, Set<State>> stateMap, String[]... tokenClasses) throws ParseException
+    {
+        NFA combined = new NFAImpl("<COMBINED>", false);
+        combined.getStartState().setAccepting(false);
+        Set<NFA> nfas = new LinkedHashSet<NFA>();
+        for (String[] tokenClass : tokenClasses) {
+            NFA nfa = new RecursiveDescentParserImpl(new TokenizerImpl(tokenClass[1]), nfas).parse();
+            nfa.setIdentifier(tokenClass[0]);
+            nfa.setCharClass(false);
+            nfas.add(nfa);
+            stateMap.put(tokenClass[0], nfa.getAcceptingStates());
+            combined.addAllStates(nfa.getStates());
+            combined.getStartState().addTransition(NFAImpl.EPSILON, nfa.getStartState());
+        }
+        return NFAToDFAConverter.convert(combined, stateMap);
+    }
+
+    /* Returns the tokens (as "type:text") that a table walker over the DFA finds in the test input. */
+    private static List<String> scan(CompiledDFA table)
+    {
+        return scan(table, INPUT);
+    }
+
+    /* Returns the tokens (as "type:text") that a table walker over the DFA finds in the input. */
+    private static List<String> scan(CompiledDFA table, String input)
+    {
+        TableWalker walker = new TableWalkerImpl(table, new ByteBufferInput(ByteBuffer.wrap(input.getBytes())));
+        List<String> tokens = new ArrayList<String>();
+        while (walker.hasNextToken()) {
+            SourceToken token = walker.getNextToken();
+            tokens.add(token.getTokenType() + ":" + token.getTokenString());
+        }
+        return tokens;
+    }
+
+}
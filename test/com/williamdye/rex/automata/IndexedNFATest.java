@@ -0,0 +1,83 @@
+package com.williamdye.rex.automata;
+
+import com.williamdye.rex.parser.*;
+import com.williamdye.rex.tokens.*;
+
+import org.junit.*;
+
+import java.text.ParseException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class IndexedNFATest
+{
+
+    @Test
+    public void startStateIsNumberedZero() throws ParseException
+    {
+        NFA nfa = parse("(a|b)*abb");
+        IndexedNFA indexed = new IndexedNFA(nfa);
+        assertEquals(0, indexed.getNumber(nfa.getStartState()));
+        assertSame(nfa.getStartState(), indexed.getState(0));
+        assertTrue(indexed.getStartClosure().get(0));
+    }
+
+    @Test
+    public void everyStateIsNumberedOnce() throws ParseException
+    {
+        IndexedNFA indexed = new IndexedNFA(parse("([a-z])*ing|[A-Z]"));
+        for (int s = 0; s < indexed.getNumStates(); s++)
+            assertEquals(s, indexed.getNumber(indexed.getState(s)));
+        assertEquals(-1, indexed.getNumber(new NFAImpl().getStartState()));
+    }
+
+    @Test
+    public void closuresFollowEpsilonTransitions() throws ParseException
+    {
+        IndexedNFA indexed = new IndexedNFA(parse("(a|b)*abb"));
+        for (int s = 0; s < indexed.getNumStates(); s++) {
+            BitSet closure = indexed.getClosure(s);
+            assertTrue(closure.get(s));
+            State state = indexed.getState(s);
+            if (state.hasTransition(NFAImpl.EPSILON)) {
+                for (State next : state.getNextStates(NFAImpl.EPSILON))
+                    assertTrue(closure.get(indexed.getNumber(next)));
+            }
+        }
+    }
+
+    @Test
+    public void simulationAcceptsTheLanguageOfTheRegex() throws ParseException
+    {
+        IndexedNFA indexed = new IndexedNFA(parse("(a|b)*abb"));
+        assertTrue(accepts(indexed, "abb"));
+        assertTrue(accepts(indexed, "babaabb"));
+        assertFalse(accepts(indexed, "ab"));
+        assertFalse(accepts(indexed, "abba"));
+        assertFalse(accepts(indexed, "abc"));
+        assertFalse(accepts(indexed, ""));
+    }
+
+    /* Parses a MiniRE regex into an NFA. */
+    private static NFA parse(String regex) throws ParseException
+    {
+        return new RecursiveDescentParserImpl(new TokenizerImpl(regex), new LinkedHashSet<NFA>()).parse();
+    }
+
+    /* Returns true if simulating the indexed NFA on the whole string ends in an accepting state. */
+    private static boolean accepts(IndexedNFA nfa, String string)
+    {
+        BitSet current = (BitSet)nfa.getStartClosure().clone();
+        for (char c : string.toCharArray()) {
+            int classId = nfa.getPartition().getClassId(c);
+            if (classId < 0)
+                return false;
+            BitSet next = new BitSet(nfa.getNumStates());
+            nfa.move(current, classId, next);
+            current = next;
+        }
+        return current.intersects(nfa.getAcceptingStates());
+    }
+
+}
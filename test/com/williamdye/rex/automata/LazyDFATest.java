@@ -0,0 +1,98 @@
+package com.williamdye.rex.automata;
+
+import com.williamdye.rex.parser.*;
+import com.williamdye.rex.scanner.*;
+import com.williamdye.rex.tokens.*;
+import com.williamdye.rex.util.*;
+
+import org.junit.*;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LazyDFATest
+{
+
+    private static final String[] REGEXES = {
+        "(a|b)*abb",
+        "([a-z])*ing",
+        "[A-Z]([a-z])*",
+        "([0-9])+(\\.([0-9])+|)",
+        "(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)",
+        "if|iff|([a-z])+"
+    };
+
+    private static final String INPUT = "babb abb aabba singing ing king Ring\n"
+            + "Alice and Bob 3.14 2.0.1 42. abbbbbaaaaab bababababa\r\n"
+            + "\n"
+            + "if iff ifff abaaaa bbbbbbbbbabbbbb x";
+
+    @Test
+    public void lazyDFAFindsTheSameMatchesAsTheConvertedDFA() throws ParseException
+    {
+        for (String regex : REGEXES)
+            assertEquals(regex, matches(convert(regex), INPUT), matches(new LazyDFA(new IndexedNFA(parse(regex)), LazyDFA.DEFAULT_MAX_STATES), INPUT));
+    }
+
+    @Test
+    public void lazyDFAOnlyBuildsTheStatesItReaches() throws ParseException
+    {
+        String regex = "(a|b)*a(a|b)(a|b)(a|b)(a|b)(a|b)";
+        LazyDFA lazy = new LazyDFA(new IndexedNFA(parse(regex)), LazyDFA.DEFAULT_MAX_STATES);
+        matches(lazy, "b");
+        assertTrue(lazy.getNumStates() < convert(regex).getNumStates());
+    }
+
+    @Test
+    public void lazyDFASimulatesTheNFAOnceItsCacheIsFull() throws ParseException
+    {
+        for (String regex : REGEXES) {
+            LazyDFA lazy = new LazyDFA(new IndexedNFA(parse(regex)), 2);
+            assertEquals(regex, matches(convert(regex), INPUT), matches(lazy, INPUT));
+            assertTrue(lazy.getNumStates() <= 2);
+        }
+    }
+
+    @Test
+    public void lazyDFACursorsShareTheCache() throws ParseException
+    {
+        LazyDFA lazy = new LazyDFA(new IndexedNFA(parse("(a|b)*abb")), LazyDFA.DEFAULT_MAX_STATES);
+        List<String> first = matches(lazy, INPUT);
+        int numStates = lazy.getNumStates();
+        assertEquals(first, matches(lazy, INPUT));
+        assertEquals(numStates, lazy.getNumStates());
+    }
+
+    /* Parses a MiniRE regex into an NFA. */
+    private static NFA parse(String regex) throws ParseException
+    {
+        return new RecursiveDescentParserImpl(new TokenizerImpl(regex), new LinkedHashSet<NFA>()).parse();
+    }
+
+    /* Returns the DFA that the subset construction builds for the regex, as find() originally used it. */
+    private static CompiledDFA convert(String regex) throws ParseException
+    {
+        NFA nfa = parse(regex);
+        Map<String, Set<State>> map = new LinkedHashMap<String, Set<State>>();
+        map.put(MiniRETableWalkerImpl.MATCH_TOKEN, nfa.getAcceptingStates());
+        return new CompiledDFAImpl(NFAToDFAConverter.convert(nfa, map));
+    }
+
+    /* Returns every match (as "line:index:text") that the MiniRE table walker finds in the input. */
+    private static List<String> matches(Recognizer recognizer, String input)
+    {
+        MiniRETableWalkerImpl walker = new MiniRETableWalkerImpl(recognizer, new ByteBufferInput(ByteBuffer.wrap(input.getBytes())));
+        List<String> matches = new ArrayList<String>();
+        while (walker.hasNextToken()) {
+            SourceToken token = walker.getNextToken();
+            if (MiniRETableWalkerImpl.MATCH_TOKEN.equals(token.getTokenType()))
+                matches.add(walker.getBufferLineNumber() + ":" + (walker.getBufferIndex() - token.getTokenString().length())
+                        + ":" + token.getTokenString());
+        }
+        return matches;
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.williamdye.rex.string;
+
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MetadataImplTest
+{
+
+    @Test
+    public void matchesAreReadInTheOrderTheyWereAdded()
+    {
+        MetadataImpl meta = new MetadataImpl("f.txt", 1, 4);
+        meta.addMatch(1, 9);
+        meta.addMatch(2, 0);
+        meta.addMatch(70000, Integer.MAX_VALUE);
+        assertEquals("f.txt", meta.getFile());
+        assertEquals(Arrays.asList("1:4", "1:9", "2:0", "70000:" + Integer.MAX_VALUE), read(meta));
+    }
+
+    @Test
+    public void aNegativeIndexKeepsItsLine()
+    {
+        MetadataImpl meta = new MetadataImpl("f.txt", 3, -1);
+        meta.addMatch(3, Integer.MIN_VALUE);
+        meta.addMatch(4, -7);
+        assertEquals(Arrays.asList("3:-1", "3:" + Integer.MIN_VALUE, "4:-7"), read(meta));
+    }
+
+    @Test
+    public void duplicatesAreDroppedWhenTheyAreAdded()
+    {
+        MetadataImpl meta = new MetadataImpl("f.txt", 2, 5);
+        meta.addMatch(2, 5);
+        meta.addMatch(3, 1);
+        meta.addMatch(1, 8);    /* out of order */
+        meta.addMatch(2, 5);
+        meta.addMatch(1, 8);
+        meta.addMatch(4, 0);
+        meta.addMatch(3, 1);
+        assertEquals(Arrays.asList("2:5", "3:1", "1:8", "4:0"), read(meta));
+    }
+
+    @Test
+    public void readingDoesNotChangeTheMatches()
+    {
+        MetadataImpl meta = new MetadataImpl("f.txt", 5, 0);
+        meta.addMatch(1, 0);
+        meta.addMatch(5, 0);
+        List<String> first = read(meta);
+        assertEquals(first, read(meta));
+        meta.addMatch(6, 2);
+        meta.addMatch(1, 0);
+        assertEquals(Arrays.asList("5:0", "1:0", "6:2"), read(meta));
+    }
+
+    @Test
+    public void getMatchesBoxesEveryMatchInOrder()
+    {
+        MetadataImpl meta = new MetadataImpl("f.txt", 2, 1);
+        meta.addMatch(1, -3);
+        meta.addMatch(2, 1);
+        List<List<Integer>> expected = new ArrayList<List<Integer>>();
+        expected.add(Arrays.asList(2, 1));
+        expected.add(Arrays.asList(1, -3));
+        assertEquals(expected, new ArrayList<List<Integer>>(meta.getMatches()));
+    }
+
+    @Test
+    public void noMatchIsAddedForLineZero()
+    {
+        assertEquals(0, new MetadataImpl("f.txt", 0, 0).getMatchCount());
+    }
+
+    /* Returns every match (as "line:index") of the metadata, in order. */
+    private static List<String> read(Metadata meta)
+    {
+        List<String> matches = new ArrayList<String>();
+        for (int i = 0; i < meta.getMatchCount(); i++)
+            matches.add(meta.getLine(i) + ":" + meta.getIndex(i));
+        return matches;
+    }
+
+}
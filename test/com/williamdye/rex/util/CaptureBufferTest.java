@@ -0,0 +1,83 @@
+package com.williamdye.rex.util;
+
+import org.junit.*;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class CaptureBufferTest
+{
+
+    @Test
+    public void smallOutputStaysInMemory()
+    {
+        CaptureBuffer buffer = new CaptureBuffer(16);
+        write(buffer, "hello");
+        assertFalse(buffer.isSpilled());
+        assertEquals("hello", copy(buffer));
+    }
+
+    @Test
+    public void largeOutputIsMovedToAFile()
+    {
+        CaptureBuffer buffer = new CaptureBuffer(16);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String line = "line " + i + "\n";
+            write(buffer, line);
+            expected.append(line);
+        }
+        buffer.write('!');
+        expected.append('!');
+        assertTrue(buffer.isSpilled());
+        assertEquals(expected.toString(), copy(buffer));
+        assertFalse(buffer.isSpilled());
+    }
+
+    @Test
+    public void copyingEmptiesTheBuffer()
+    {
+        CaptureBuffer buffer = new CaptureBuffer(4);
+        write(buffer, "abcdefgh");
+        copy(buffer);
+        assertEquals("", copy(buffer));
+        write(buffer, "xy");
+        assertEquals("xy", copy(buffer));
+    }
+
+    @Test
+    public void closingDiscardsTheCapturedBytes()
+    {
+        CaptureBuffer buffer = new CaptureBuffer(4);
+        write(buffer, "abcdefgh");
+        buffer.close();
+        assertFalse(buffer.isSpilled());
+        assertEquals("", copy(buffer));
+    }
+
+    @Test
+    public void outputBufferWritesThroughInChunks()
+    {
+        CaptureBuffer buffer = new CaptureBuffer(8);
+        OutputBuffer out = new OutputBuffer(buffer, 4);
+        out.print("chunked output");
+        out.println();
+        out.flush();
+        assertEquals("chunked output" + System.getProperty("line.separator"), copy(buffer));
+    }
+
+    private static void write(CaptureBuffer buffer, String text)
+    {
+        byte[] bytes = text.getBytes();
+        buffer.write(bytes, 0, bytes.length);
+    }
+
+    private static String copy(CaptureBuffer buffer)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.copyTo(out);
+        return out.toString();
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.williamdye.rex.util;
+
+import org.junit.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FileGlobTest
+{
+
+    private Path dir;
+
+    @Before
+    public void createFiles() throws IOException
+    {
+        dir = Files.createTempDirectory("rex");
+        for (String name : new String[] { "x1.txt", "x2.txt", "y.csv", "data[1].txt", "a{b}.txt", "sub/x3.txt" }) {
+            Path file = dir.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        }
+    }
+
+    @After
+    public void deleteFiles() throws IOException
+    {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, java.nio.file.attribute.BasicFileAttributes attrs) throws IOException
+            {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path directory, IOException except) throws IOException
+            {
+                Files.delete(directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void namesWithoutMetacharactersAreNotPatterns()
+    {
+        assertFalse(FileGlob.isPattern("logs/x1.txt"));
+        assertTrue(FileGlob.isPattern("logs/*.txt"));
+        assertTrue(FileGlob.isPattern("data[1].txt"));
+    }
+
+    @Test
+    public void plainNamesAreReturnedWhetherOrNotTheyExist()
+    {
+        assertEquals(Collections.singletonList(name("missing.txt")), FileGlob.expand(name("missing.txt")));
+        assertEquals(Collections.singletonList(name("x1.txt")), FileGlob.expand(name("x1.txt")));
+    }
+
+    @Test
+    public void patternsExpandToTheMatchingFilesInOrder()
+    {
+        assertEquals(Arrays.asList(name("x1.txt"), name("x2.txt")), FileGlob.expand(name("x?.txt")));
+        assertEquals(Arrays.asList(name("sub/x3.txt"), name("x1.txt"), name("x2.txt")), FileGlob.expand(name("**x*.txt")));
+        assertEquals(Collections.<String>emptyList(), FileGlob.expand(name("*.log")));
+    }
+
+    @Test
+    public void existingFilesWithMetacharactersAreReadLiterally()
+    {
+        assertEquals(Collections.singletonList(name("data[1].txt")), FileGlob.expand(name("data[1].txt")));
+        assertEquals(Collections.singletonList(name("a{b}.txt")), FileGlob.expand(name("a{b}.txt")));
+    }
+
+    @Test
+    public void missingFilesWithMetacharactersAreExpanded()
+    {
+        assertEquals(Collections.singletonList(name("x1.txt")), FileGlob.expand(name("x[1].txt")));
+    }
+
+    /* Returns the name of a file in the test directory. */
+    private String name(String relative)
+    {
+        return dir.toString() + File.separator + relative.replace("/", File.separator);
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.williamdye.rex.util;
+
+import org.junit.*;
+
+import java.io.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MappedCharBufferTest
+{
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException
+    {
+        file = File.createTempFile("rex", ".txt");
+    }
+
+    @After
+    public void deleteFile()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void readsTheSameCharactersAsCharBuffer() throws IOException
+    {
+        write("first line\nsecond  line\r\nthird\rfourth\n\nsixth");
+        assertEquals(readAll(new CharBuffer(file)), readAll(new MappedCharBuffer(file)));
+    }
+
+    @Test
+    public void readsAFileWithATrailingNewline() throws IOException
+    {
+        write("one\ntwo\n");
+        assertEquals(readAll(new CharBuffer(file)), readAll(new MappedCharBuffer(file)));
+    }
+
+    @Test
+    public void peekingDoesNotConsume() throws IOException
+    {
+        write("ab");
+        try (MappedCharBuffer buffer = new MappedCharBuffer(file)) {
+            assertEquals('a', buffer.peekNextChar());
+            assertEquals('a', buffer.getNextChar());
+            assertEquals('b', buffer.getNextChar());
+            assertEquals('\n', buffer.getNextChar());
+            assertFalse(buffer.advance());
+        }
+    }
+
+    @Test
+    public void settingTheIndexRereadsTheLine() throws IOException
+    {
+        write("abcdef\nghi");
+        assertEquals(rewind(new CharBuffer(file)), rewind(new MappedCharBuffer(file)));
+    }
+
+    @Test
+    public void closingEarlyOrTwiceIsAllowed() throws IOException
+    {
+        write("abc\ndef");
+        MappedCharBuffer buffer = new MappedCharBuffer(file);
+        assertEquals('a', buffer.getNextChar());
+        buffer.close();
+        buffer.close();
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void copiesTheBytesOfTheFileAfterTheLastLine() throws IOException
+    {
+        write("abc\r\ndef");
+        try (MappedCharBuffer buffer = new MappedCharBuffer(file, false)) {
+            assertTrue(buffer.advance());
+            assertEquals(5, buffer.getLineStart());
+            assertEquals(8, buffer.getLineEnd());
+            assertFalse(buffer.advance());
+            assertEquals("c\r\nd", buffer.getText(2, 6));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            OutputBuffer out = new OutputBuffer(bytes, 3);
+            buffer.copy(1, buffer.getSize(), out);
+            out.flush();
+            assertEquals("bc\r\ndef", bytes.toString("ISO-8859-1"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void missingFileIsRejected()
+    {
+        file.delete();
+        new MappedCharBuffer(file);
+    }
+
+    /* Writes the text to the test file. */
+    private void write(String text) throws IOException
+    {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1")) {
+            writer.write(text);
+        }
+    }
+
+    /* Reads part of the first line twice, as a table walker does when it backs up to its longest match. */
+    private static String rewind(InputBuffer buffer)
+    {
+        StringBuilder read = new StringBuilder();
+        for (int i = 0; i < 4; i++)
+            read.append(buffer.getNextChar());
+        buffer.setIndex(1);
+        for (int i = 0; i < 4; i++)
+            read.append(buffer.getNextChar());
+        read.append(buffer.advance()).append(buffer.getLineNumber()).append(buffer.getNextChar());
+        return read.toString();
+    }
+
+    /* Returns every character read from the buffer, as "line:index:char", line by line. */
+    private static List<String> readAll(InputBuffer buffer)
+    {
+        List<String> chars = new ArrayList<String>();
+        do {
+            char c;
+            do {
+                c = buffer.getNextChar();
+                chars.add(buffer.getLineNumber() + ":" + buffer.getIndex() + ":" + c);
+            } while (c != '\n');
+        } while (buffer.advance());
+        return chars;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.williamdye.rex.util;
+
+import org.junit.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class OutputBufferTest
+{
+
+    private File file;
+
+    @Before
+    public void createFile() throws IOException
+    {
+        file = File.createTempFile("rex", ".out");
+    }
+
+    @After
+    public void deleteFile()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void nothingIsWrittenUntilTheBufferIsFlushed()
+    {
+        Chunks chunks = new Chunks();
+        OutputBuffer out = new OutputBuffer(chunks, 16);
+        out.print("abc");
+        out.print(' ');
+        assertTrue(chunks.written.isEmpty());
+        out.flush();
+        out.flush();
+        assertEquals(Arrays.asList("abc "), chunks.written);
+        assertEquals(2, chunks.flushes);
+    }
+
+    @Test
+    public void aFullBufferIsWrittenInChunks()
+    {
+        Chunks chunks = new Chunks();
+        OutputBuffer out = new OutputBuffer(chunks, 4);
+        out.print("abcdefghij");
+        out.write(ByteBuffer.wrap("klmnop".getBytes()));
+        out.flush();
+        assertEquals(Arrays.asList("abcd", "efgh", "ijkl", "mnop"), chunks.written);
+    }
+
+    @Test
+    public void writesDirectlyToAFileChannel() throws IOException
+    {
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            OutputBuffer out = new OutputBuffer(stream.getChannel(), 8);
+            out.println("first line");
+            out.print("second");
+            out.flush();
+        }
+        String separator = System.getProperty("line.separator");
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), "ISO-8859-1")) {
+            char[] block = new char[64];
+            assertEquals("first line" + separator + "second", new String(block, 0, reader.read(block)));
+        }
+    }
+
+
+    /**
+     * Records each write to the stream as a separate string, and counts the flushes.
+     */
+    private static class Chunks extends OutputStream
+    {
+
+        private final List<String> written = new ArrayList<String>();
+        private int flushes = 0;
+
+        @Override
+        public void write(int b)
+        {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+        {
+            written.add(new String(bytes, offset, length));
+        }
+
+        @Override
+        public void flush()
+        {
+            flushes++;
+        }
+
+    }   /* end nested Chunks class */
+
+}
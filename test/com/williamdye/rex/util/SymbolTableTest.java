@@ -0,0 +1,84 @@
+package com.williamdye.rex.util;
+
+import org.junit.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableTest
+{
+
+    @Test
+    public void theSameTextAtDifferentOffsetsIsTheSameInstance()
+    {
+        SymbolTable table = new SymbolTable();
+        char[] chars = "king ring king xking".toCharArray();
+        String first = table.intern(chars, 0, 4);
+        assertEquals("king", first);
+        assertSame(first, table.intern(chars, 10, 4));
+        assertSame(first, table.intern(chars, 16, 4));
+        assertSame(first, table.intern("king".toCharArray(), 0, 4));
+        assertNotSame(first, table.intern(chars, 5, 4));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void textsWithTheSameHashStayDistinct()
+    {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        SymbolTable table = new SymbolTable();
+        String aa = table.intern("Aa".toCharArray(), 0, 2);
+        String bb = table.intern("BB".toCharArray(), 0, 2);
+        String aabb = table.intern("AaBB".toCharArray(), 0, 4);
+        String bbaa = table.intern("BBAa".toCharArray(), 0, 4);
+        assertEquals("Aa", aa);
+        assertEquals("BB", bb);
+        assertEquals("AaBB", aabb);
+        assertEquals("BBAa", bbaa);
+        assertSame(aa, table.intern("xAa".toCharArray(), 1, 2));
+        assertSame(bb, table.intern("BBx".toCharArray(), 0, 2));
+        assertSame(bbaa, table.intern("BBAa".toCharArray(), 0, 4));
+        assertEquals(4, table.size());
+    }
+
+    @Test
+    public void growingKeepsEverySymbol()
+    {
+        SymbolTable table = new SymbolTable();
+        List<String> symbols = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++)
+            symbols.add(table.intern(("s" + i).toCharArray(), 0, ("s" + i).length()));
+        assertEquals(1000, table.size());
+        for (int i = 0; i < 1000; i++)
+            assertSame(symbols.get(i), table.intern(("s" + i).toCharArray(), 0, ("s" + i).length()));
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    public void textBeyondTheMaximumIsNotInterned()
+    {
+        SymbolTable table = new SymbolTable(3);
+        String a = table.intern("a".toCharArray(), 0, 1);
+        table.intern("b".toCharArray(), 0, 1);
+        table.intern("c".toCharArray(), 0, 1);
+        String d = table.intern("d".toCharArray(), 0, 1);
+        String again = table.intern("d".toCharArray(), 0, 1);
+        assertEquals("d", d);
+        assertEquals("d", again);
+        assertNotSame(d, again);
+        assertEquals(3, table.size());
+        assertSame(a, table.intern("a".toCharArray(), 0, 1));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    public void theEmptyTextIsInterned()
+    {
+        SymbolTable table = new SymbolTable();
+        String empty = table.intern(new char[0], 0, 0);
+        assertEquals("", empty);
+        assertSame(empty, table.intern("abc".toCharArray(), 2, 0));
+    }
+
+}